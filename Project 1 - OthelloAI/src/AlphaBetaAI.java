@@ -1,6 +1,27 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
-class AlphaBetaAI implements IOthelloAI {
+class AlphaBetaAI implements IOthelloAI, IEndgameSolver {
+
+    // Directory in which exact results are stored across games, given by
+    // -Dothello.endgame.db=<directory>. No results are stored if it isn't set.
+    private static final String DATABASE_DIR = System.getProperty("othello.endgame.db");
+    private static final int DATABASE_ENTRIES = 1 << 20;
+
+    // Results of positions with fewer empty positions are cheaper to
+    // search again than to look up
+    private static final int MIN_DATABASE_EMPTIES = 6;
+
+    private EndgameDatabase database; // null if no database is used
+    private int databaseSize;         // The board size the database was last opened for, even if it failed
+
+    // Only created when tracing is enabled (see SearchTracer)
+    private final SearchTracer tracer = SearchTracer.ENABLED ? new SearchTracer() : null;
+
+    private long nodes;             // Positions searched since the last move was asked for
+    private int score;              // The exact score of the position of the last move
+    private Position bestMove;      // The result of the last call to solve()
 
     public AlphaBetaAI() { }
 
@@ -8,21 +29,106 @@ class AlphaBetaAI implements IOthelloAI {
         ArrayList<Position> moves = s.legalMoves();
 
         if (!moves.isEmpty()) {
-            return getBestMove(s);
+            openDatabase(s.getBoard().length);
+            Position chosenPosition = getBestMove(s);
+
+            if (SearchTracer.ENABLED) {
+                tracer.finish("AlphaBetaAI");
+            }
+            return chosenPosition;
         } else {
             return new Position(-1, -1);
         }
     }
 
+    @Override
+    public int solve(GameState s) {
+        GameState copy = new GameState(s.getBoard(), s.getPlayerInTurn());
+        if (copy.legalMoves().isEmpty()) {
+            nodes = 0;
+            bestMove = new Position(-1, -1);
+            return alphabeta(copy, Integer.MIN_VALUE, Integer.MAX_VALUE, 0);
+        }
+
+        openDatabase(copy.getBoard().length);
+        bestMove = getBestMove(copy);
+        return score;
+    }
+
+    @Override
+    public Position getBestMove() {
+        return bestMove;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Opens the endgame database for the given board size, if a database
+     * directory is given and the board can be stored. A database that can't be
+     * opened is reported once, and not tried again until the board size changes.
+     */
+    private void openDatabase(int size) {
+        if (DATABASE_DIR == null || databaseSize == size) {
+            return;
+        }
+        databaseSize = size;
+
+        try {
+            if (database != null) {
+                EndgameDatabase previous = database;
+                database = null;
+                previous.close();
+            }
+            if (!BitBoard.fits(size)) {
+                return;
+            }
+
+            File file = new File(DATABASE_DIR, "endgame-" + size + ".db");
+            file.getParentFile().mkdirs();
+            database = new EndgameDatabase(file, size, DATABASE_ENTRIES);
+        } catch (IOException e) {
+            System.err.println("Endgame database not available: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns true if the result of the given position should be looked up
+     * and stored in the endgame database.
+     */
+    private boolean useDatabase(long black, long white) {
+        int positions = databaseSize * databaseSize;
+        return database != null && positions - Long.bitCount(black | white) >= MIN_DATABASE_EMPTIES;
+    }
+
     /**
      * Method that'll initialize the alphabeta function that'll determine the
      * best possible move based on the current game state, and then returns
      * the best move.
      */
     private Position getBestMove(GameState s) {
+        nodes = 0;
         ArrayList<Position> moves = s.legalMoves();
         Position chosenPosition = moves.get(0);
 
+        // The best move might already be known from an earlier game
+        long black = 0, white = 0;
+        if (database != null) {
+            black = BitBoard.fromBoard(s.getBoard(), 1);
+            white = BitBoard.fromBoard(s.getBoard(), 2);
+        }
+        boolean useDatabase = useDatabase(black, white);
+        int knownScore = useDatabase ? database.probe(black, white, s.getPlayerInTurn()) : EndgameDatabase.UNKNOWN;
+        if (knownScore != EndgameDatabase.UNKNOWN) {
+            Position known = database.getBestMove();
+            if (known.col >= 0) {
+                score = knownScore;
+                return known;
+            }
+        }
+
         // Initilize the current highest and lowest beta
         int highestAlpha = Integer.MIN_VALUE;
         int lowestBeta = Integer.MAX_VALUE;
@@ -36,7 +142,11 @@ class AlphaBetaAI implements IOthelloAI {
                 childState.insertToken(move);
 
                 // Searches recursively for the best possible outcome from current move.
-                int currentAlpha = alphabeta(childState, highestAlpha, lowestBeta);
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                int currentAlpha = alphabeta(childState, highestAlpha, lowestBeta, 0);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(0, move, highestAlpha, lowestBeta, currentAlpha, false, nodesBefore);
+                }
 
                 // If currentAlpha is larger that highestAlpha, then this position has
                 // a better outcome.
@@ -48,6 +158,10 @@ class AlphaBetaAI implements IOthelloAI {
                 }
             }
 
+            if (useDatabase) {
+                database.store(black, white, 1, highestAlpha, chosenPosition);
+            }
+            score = highestAlpha;
             return chosenPosition;
         } else {
             // ... else if player == MIN
@@ -58,7 +172,11 @@ class AlphaBetaAI implements IOthelloAI {
                 childState.insertToken(move);
 
                 // Searches recursively for the best possible outcome from current move.
-                int currentBeta = alphabeta(childState, highestAlpha, lowestBeta);
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                int currentBeta = alphabeta(childState, highestAlpha, lowestBeta, 0);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(0, move, highestAlpha, lowestBeta, currentBeta, false, nodesBefore);
+                }
 
                 // If currentBeta is lower that lowestBeta, then this position has
                 // a better outcome.
@@ -70,6 +188,10 @@ class AlphaBetaAI implements IOthelloAI {
                 }
             }
 
+            if (useDatabase) {
+                database.store(black, white, 2, lowestBeta, chosenPosition);
+            }
+            score = lowestBeta;
             return chosenPosition;
         }
     }
@@ -90,7 +212,12 @@ class AlphaBetaAI implements IOthelloAI {
      * determine either the lowest possible beta or the highest possible alpha
      * based on the player.
      */
-    private int alphabeta(GameState s, int alpha, int beta) {
+    private int alphabeta(GameState s, int alpha, int beta, int depth) {
+        nodes++;
+        if (SearchTracer.ENABLED) {
+            tracer.countNode();
+        }
+
         // If in terminal state, return value.
         if (s.isFinished()) {
             int[] tokens = s.countTokens();
@@ -106,9 +233,49 @@ class AlphaBetaAI implements IOthelloAI {
         if (moves.size() == 0) {
             s.changePlayer();
 
-            return alphabeta(s, alpha, beta);
+            return alphabeta(s, alpha, beta, depth + 1);
+        }
+
+        // Positions that have been solved before don't need to be searched again
+        long black = 0, white = 0;
+        if (database != null) {
+            black = BitBoard.fromBoard(s.getBoard(), 1);
+            white = BitBoard.fromBoard(s.getBoard(), 2);
+        }
+        boolean useDatabase = useDatabase(black, white);
+        if (useDatabase) {
+            int known = database.probe(black, white, s.getPlayerInTurn());
+            if (known != EndgameDatabase.UNKNOWN) {
+                return known;
+            }
+        }
+
+        // Stable tokens can never be captured, which bounds the final score.
+        // If the bound already falls outside the window there is no need to
+        // search any further. (Only worth checking once the window is finite)
+        int size = s.getBoard().length;
+        if ((alpha != Integer.MIN_VALUE || beta != Integer.MAX_VALUE) && BitBoard.fits(size)) {
+            int[] stable = Stability.countStableTokens(s);
+            int positions = size * size;
+
+            // Player 1 can at most get the positions not stable for player 2
+            int upperBound = positions - 2 * stable[1];
+            if (upperBound <= alpha) {
+                return upperBound;
+            }
+
+            int lowerBound = 2 * stable[0] - positions;
+            if (lowerBound >= beta) {
+                return lowerBound;
+            }
         }
 
+        // The result is only exact (and can be stored) if it ends up
+        // strictly inside the original window
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        Position bestMove = null;
+
         // Player MAX
         if (s.getPlayerInTurn() == 1) {
             // Go through all available moves in the current game state
@@ -117,7 +284,15 @@ class AlphaBetaAI implements IOthelloAI {
                 clonedState.insertToken(move);
 
                 // Searches recursively for the highest possible alpha from current move.
-                alpha = Math.max(alpha, alphabeta(clonedState, alpha, beta));
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                int value = alphabeta(clonedState, alpha, beta, depth + 1);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(depth + 1, move, alpha, beta, value, beta <= value, nodesBefore);
+                }
+                if (value > alpha) {
+                    alpha = value;
+                    bestMove = move;
+                }
 
                 // beta cut-off
                 if (beta <= alpha) {
@@ -125,6 +300,9 @@ class AlphaBetaAI implements IOthelloAI {
                 }
             }
 
+            if (useDatabase && originalAlpha < alpha && alpha < originalBeta) {
+                database.store(black, white, 1, alpha, bestMove);
+            }
             return alpha;
         } else {
             // Player MIN
@@ -134,7 +312,15 @@ class AlphaBetaAI implements IOthelloAI {
                 clonedState.insertToken(move);
 
                 // Searches recursively for the lowest possible beta from current move.
-                beta = Math.min(beta, alphabeta(clonedState, alpha, beta));
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                int value = alphabeta(clonedState, alpha, beta, depth + 1);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(depth + 1, move, alpha, beta, value, value <= alpha, nodesBefore);
+                }
+                if (value < beta) {
+                    beta = value;
+                    bestMove = move;
+                }
 
                 // alpha cut-off
                 if (beta <= alpha) {
@@ -142,6 +328,9 @@ class AlphaBetaAI implements IOthelloAI {
                 }
             }
 
+            if (useDatabase && originalAlpha < beta && beta < originalBeta) {
+                database.store(black, white, 2, beta, bestMove);
+            }
             return beta;
         }
     }
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * Helper methods for representing the tokens of one player as a bitboard, i.e. a long
+ * where bit (col * size + row) is set if the player has a token at that position.
+ * Only boards with at most 64 positions (size 4, 6 and 8) can be represented.
+ */
+public class BitBoard {
+
+    // The four line directions as (deltaCol, deltaRow): vertical, horizontal
+    // and the two diagonals. The opposite directions are found by negation.
+    static final int[][] DIRECTIONS = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+
+    // Masks indexed by board size, computed once
+    private static final long[] ALL = new long[9];
+    private static final long[] FIRST_ROW = new long[9];
+    private static final long[] LAST_ROW = new long[9];
+    private static final long[][][] LINES = new long[9][][];
+
+    static {
+        for (int size = 1; size <= 8; size++) {
+            for (int col = 0; col < size; col++) {
+                FIRST_ROW[size] |= bit(col, 0, size);
+                LAST_ROW[size] |= bit(col, size - 1, size);
+                for (int row = 0; row < size; row++) {
+                    ALL[size] |= bit(col, row, size);
+                }
+            }
+
+            LINES[size] = new long[DIRECTIONS.length][];
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                LINES[size][d] = lineMasks(DIRECTIONS[d][0], DIRECTIONS[d][1], size);
+            }
+        }
+    }
+
+    // The move generator to use, chosen once at startup (see selectMoveGenerator()).
+    // Declared after the masks, as the generators use them when created.
+    public static final IMoveGenerator MOVES = selectMoveGenerator();
+
+    private BitBoard() { }
+
+    /**
+     * Returns the vectorized move generator if it is on the classpath and the JVM was started
+     * with --add-modules jdk.incubator.vector, and the scalar one otherwise. The scalar one
+     * can be forced with -Dothello.vector=false.
+     */
+    private static IMoveGenerator selectMoveGenerator() {
+        if (!Boolean.parseBoolean(System.getProperty("othello.vector", "true"))) {
+            return new ScalarMoveGenerator();
+        }
+        try {
+            return (IMoveGenerator) Class.forName("VectorMoveGenerator").getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled, the module isn't available, or the CPU has too few vector lanes
+            return new ScalarMoveGenerator();
+        }
+    }
+
+    /**
+     * Returns true if a board of the given size can be represented as a bitboard
+     */
+    public static boolean fits(int size) {
+        return size > 0 && size * size <= 64;
+    }
+
+    /**
+     * Returns the bit for the given position
+     */
+    public static long bit(int col, int row, int size) {
+        return 1L << (col * size + row);
+    }
+
+    /**
+     * Returns the mask with all positions of the board set
+     */
+    public static long all(int size) {
+        return ALL[size];
+    }
+
+    /**
+     * Returns the bitboard of the given player (1 or 2) on the given board
+     */
+    public static long fromBoard(int[][] board, int player) {
+        int size = board.length;
+        long bits = 0;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                if (board[col][row] == player) {
+                    bits |= bit(col, row, size);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Moves every bit one step in the given direction. Bits that would leave the
+     * board are dropped instead of wrapping around into the next column.
+     */
+    public static long shift(long bits, int deltaCol, int deltaRow, int size) {
+        if (deltaRow == 1) {
+            bits &= ~LAST_ROW[size];
+        } else if (deltaRow == -1) {
+            bits &= ~FIRST_ROW[size];
+        }
+
+        int delta = deltaCol * size + deltaRow;
+        return (delta >= 0 ? bits << delta : bits >>> -delta) & ALL[size];
+    }
+
+    /**
+     * Returns the opponent tokens captured when the player owning own puts a token on
+     * the given empty position, which is 0 if the move isn't legal
+     */
+    public static long flips(long own, long opponent, int col, int row, int size) {
+        long flipped = 0;
+        for (int[] direction : DIRECTIONS) {
+            for (int sign = 1; sign >= -1; sign -= 2) {
+                int deltaCol = sign * direction[0];
+                int deltaRow = sign * direction[1];
+
+                long line = 0;
+                int c = col + deltaCol;
+                int r = row + deltaRow;
+                while (0 <= c && c < size && 0 <= r && r < size && (opponent & bit(c, r, size)) != 0) {
+                    line |= bit(c, r, size);
+                    c += deltaCol;
+                    r += deltaRow;
+                }
+                if (0 <= c && c < size && 0 <= r && r < size && (own & bit(c, r, size)) != 0) {
+                    flipped |= line;
+                }
+            }
+        }
+        return flipped;
+    }
+
+    /**
+     * Returns the union of all lines in the given direction (see DIRECTIONS) that
+     * are completely filled by the given occupied positions.
+     */
+    public static long fullLines(long occupied, int direction, int size) {
+        long full = 0;
+        for (long line : LINES[size][direction]) {
+            if ((occupied & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Returns the masks of every line on the board going in the given direction
+     */
+    private static long[] lineMasks(int deltaCol, int deltaRow, int size) {
+        long[] lines = new long[4 * size];
+        int count = 0;
+
+        // A line starts at every position which has no predecessor on the board
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                int prevCol = col - deltaCol;
+                int prevRow = row - deltaRow;
+                if (0 <= prevCol && prevCol < size && 0 <= prevRow && prevRow < size) {
+                    continue;
+                }
+
+                long line = 0;
+                for (int c = col, r = row; 0 <= c && c < size && 0 <= r && r < size; c += deltaCol, r += deltaRow) {
+                    line |= bit(c, r, size);
+                }
+                lines[count++] = line;
+            }
+        }
+
+        return Arrays.copyOf(lines, count);
+    }
+}
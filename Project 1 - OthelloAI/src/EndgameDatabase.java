@@ -0,0 +1,264 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Disk-backed store of exact endgame results. The results are kept in a memory-mapped
+ * file as a hash table with open addressing, so they survive restarts and a lookup
+ * costs no more than a few memory reads.
+ *
+ * Positions are stored in a canonical form (the smallest of the 8 rotations and
+ * reflections of the board), so symmetric positions share their entry. Every entry
+ * holds the complete canonical position, hence a lookup never returns the result of
+ * another position. A database only holds positions of a single board size.
+ */
+public class EndgameDatabase {
+
+    private static final int MAGIC = 0x4f544844; // "OTHD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;   // magic, version, board size, capacity
+
+    // Layout of an entry: black (8), white (8), score (2), move (1), player (1), unused (4)
+    private static final int ENTRY_SIZE = 24;
+    private static final int SCORE_OFFSET = 16;
+    private static final int MOVE_OFFSET = 18;
+    private static final int PLAYER_OFFSET = 19;
+
+    // Largest number of entries that can be addressed within a single mapping
+    public static final int MAX_CAPACITY = 1 << 26;
+
+    // Amount of neighbouring entries looked at before giving up
+    private static final int MAX_PROBES = 16;
+
+    // Returned by probe if the position is unknown
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int capacity;
+
+    // For each symmetry, the index each position is moved to, and back again
+    private final int[][] transforms;
+    private final int[][] inverses;
+
+    // The best move of the last successful probe
+    private int bestCol = -1;
+    private int bestRow = -1;
+
+    /**
+     * Opens the database in the given file, creating it if it doesn't exist
+     * @param file The file to store the results in
+     * @param size The number of columns (and rows) of the positions in the database
+     * @param capacity The number of entries, rounded up to a power of 2. Ignored for existing databases.
+     * @throws IOException if the file couldn't be mapped, is corrupt or contains a database for another board size
+     */
+    public EndgameDatabase(File file, int size, int capacity) throws IOException {
+        if (!BitBoard.fits(size)) {
+            throw new IllegalArgumentException("Board size " + size + " cannot be stored as bitboards");
+        }
+        this.size = size;
+
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (exists) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException(file + " is not an endgame database");
+            }
+            if (header.getInt(8) != size) {
+                channel.close();
+                throw new IOException(file + " holds positions for board size " + header.getInt(8));
+            }
+            this.capacity = header.getInt(12);
+            if (this.capacity <= 0 || this.capacity > MAX_CAPACITY || Integer.bitCount(this.capacity) != 1) {
+                channel.close();
+                throw new IOException(file + " has a corrupt header: capacity " + this.capacity);
+            }
+            if (channel.size() < HEADER_SIZE + (long) this.capacity * ENTRY_SIZE) {
+                channel.close();
+                throw new IOException(file + " is truncated: expected " + this.capacity + " entries");
+            }
+        } else {
+            if (capacity <= 0 || capacity > MAX_CAPACITY) {
+                channel.close();
+                throw new IllegalArgumentException("Capacity should be between 1 and " + MAX_CAPACITY);
+            }
+            this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * ENTRY_SIZE);
+        if (!exists) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, this.capacity);
+        }
+
+        transforms = new int[8][size * size];
+        inverses = new int[8][size * size];
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            for (int col = 0; col < size; col++) {
+                for (int row = 0; row < size; row++) {
+                    int from = col * size + row;
+                    int to = transform(col, row, symmetry);
+                    transforms[symmetry][from] = to;
+                    inverses[symmetry][to] = from;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the exact final score (tokens of player 1 minus tokens of player 2) of the
+     * given position, or UNKNOWN if it isn't in the database. After a successful probe
+     * the best move can be found using getBestMove().
+     */
+    public synchronized int probe(long black, long white, int player) {
+        int symmetry = canonicalSymmetry(black, white);
+        long canonicalBlack = apply(black, symmetry);
+        long canonicalWhite = apply(white, symmetry);
+
+        int slot = slot(canonicalBlack, canonicalWhite, player);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int offset = offset((slot + i) & (capacity - 1));
+            long entryBlack = buffer.getLong(offset);
+            long entryWhite = buffer.getLong(offset + 8);
+
+            if (entryBlack == 0 && entryWhite == 0) { // An empty entry ends the search
+                return UNKNOWN;
+            }
+            if (entryBlack == canonicalBlack && entryWhite == canonicalWhite
+                    && buffer.get(offset + PLAYER_OFFSET) == player) {
+                int move = buffer.get(offset + MOVE_OFFSET);
+                if (move < 0) {
+                    bestCol = bestRow = -1;
+                } else {
+                    int index = inverses[symmetry][move];
+                    bestCol = index / size;
+                    bestRow = index % size;
+                }
+                return buffer.getShort(offset + SCORE_OFFSET);
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the best move found by the last successful probe, or (-1, -1) if it isn't known
+     */
+    public synchronized Position getBestMove() {
+        return new Position(bestCol, bestRow);
+    }
+
+    /**
+     * Stores the exact final score of the given position
+     * @param bestMove The best move in the position, or null if it isn't known
+     */
+    public synchronized void store(long black, long white, int player, int score, Position bestMove) {
+        int symmetry = canonicalSymmetry(black, white);
+        long canonicalBlack = apply(black, symmetry);
+        long canonicalWhite = apply(white, symmetry);
+        int move = bestMove == null || bestMove.col < 0
+                ? -1
+                : transforms[symmetry][bestMove.col * size + bestMove.row];
+
+        // Use the entry of the position or the first empty one. If neither
+        // are found, the result replaces the entry at the preferred slot.
+        int slot = slot(canonicalBlack, canonicalWhite, player);
+        int offset = offset(slot);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int candidate = offset((slot + i) & (capacity - 1));
+            long entryBlack = buffer.getLong(candidate);
+            long entryWhite = buffer.getLong(candidate + 8);
+
+            if ((entryBlack == 0 && entryWhite == 0) || (entryBlack == canonicalBlack
+                    && entryWhite == canonicalWhite && buffer.get(candidate + PLAYER_OFFSET) == player)) {
+                offset = candidate;
+                break;
+            }
+        }
+
+        buffer.putLong(offset, canonicalBlack);
+        buffer.putLong(offset + 8, canonicalWhite);
+        buffer.putShort(offset + SCORE_OFFSET, (short) score);
+        buffer.put(offset + MOVE_OFFSET, (byte) move);
+        buffer.put(offset + PLAYER_OFFSET, (byte) player);
+    }
+
+    /**
+     * Writes all changes to disk and closes the file
+     */
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Returns the symmetry that turns the given position into its canonical form
+     */
+    private int canonicalSymmetry(long black, long white) {
+        int best = 0;
+        long bestBlack = black;
+        long bestWhite = white;
+
+        for (int symmetry = 1; symmetry < 8; symmetry++) {
+            long b = apply(black, symmetry);
+            if (Long.compareUnsigned(b, bestBlack) > 0) {
+                continue;
+            }
+
+            long w = apply(white, symmetry);
+            if (b != bestBlack || Long.compareUnsigned(w, bestWhite) < 0) {
+                best = symmetry;
+                bestBlack = b;
+                bestWhite = w;
+            }
+        }
+        return best;
+    }
+
+    private long apply(long bits, int symmetry) {
+        int[] transform = transforms[symmetry];
+        long result = 0;
+        while (bits != 0) {
+            result |= 1L << transform[Long.numberOfTrailingZeros(bits)];
+            bits &= bits - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the given position after applying one of the 8 symmetries
+     * of the square (bit 0: mirror columns, bit 1: mirror rows, bit 2: transpose).
+     */
+    private int transform(int col, int row, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            col = size - 1 - col;
+        }
+        if ((symmetry & 2) != 0) {
+            row = size - 1 - row;
+        }
+        if ((symmetry & 4) != 0) {
+            int tmp = col;
+            col = row;
+            row = tmp;
+        }
+        return col * size + row;
+    }
+
+    private int slot(long black, long white, int player) {
+        long hash = black * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(white * 0xC2B2AE3D27D4EB4FL, 31) ^ player;
+        hash ^= hash >>> 29;
+        return (int) hash & (capacity - 1);
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+}
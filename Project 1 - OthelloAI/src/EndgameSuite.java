@@ -0,0 +1,242 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs a suite of endgame positions with known exact results (in the style of the FFO
+ * test suite) through an AI, and reports whether it found the right score and best move
+ * along with the nodes searched, the time used and the nodes per second.
+ *
+ * The suite is a text file with one position per line:
+ *     <board> <side to move>; <move>:<score>; <move>:<score>; ...
+ * where the board and side to move are given in the notation of GameState.toString(),
+ * a move is given as a column letter and a row number (e.g. c4), and a score is the final
+ * disc difference from the view of the side to move, as counted by GameState.countTokens().
+ * The moves with the highest score are the best moves. Not every move has to be listed,
+ * but the best score must be, and a score may be given without a move.
+ *
+ * AIs implementing IEndgameSolver are checked on both score and move, and their nodes are
+ * reported. Other AIs are only checked on their move.
+ */
+public class EndgameSuite {
+
+    /**
+     * Valid arguments: suite [OthelloAI]
+     * or: generate suite positions empties [size] to create a suite from random games
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && args[0].equals("generate")) {
+            int size = args.length >= 5 ? Integer.parseInt(args[4]) : 8;
+            generate(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), size, new Random());
+            return;
+        }
+
+        if (args.length < 1) {
+            System.err.println("Usage: java EndgameSuite suite [OthelloAI]");
+            System.err.println("       java EndgameSuite generate suite positions empties [size]");
+            System.exit(1);
+        }
+
+        String name = args.length >= 2 ? args[1] : "AlphaBetaAI";
+        IOthelloAI ai;
+        try {
+            ai = (IOthelloAI) Class.forName(name).getConstructor().newInstance();
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+            System.err.println("Could not create " + name + ": " + e);
+            System.exit(1);
+            return;
+        }
+
+        ArrayList<GameState> positions = new ArrayList<>();
+        ArrayList<int[]> results = new ArrayList<>();
+        readSuite(args[0], positions, results);
+        System.out.println("Solving " + positions.size() + " positions from " + args[0] + " with " + name);
+
+        boolean passed = run(ai, positions, results);
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Solves every position with the given AI and prints a line with the outcome of each,
+     * followed by the totals. Returns true if every result was right.
+     * @param results For every position, the score of each of its positions (col * size + row)
+     * with Integer.MIN_VALUE for unknown scores, followed by the best score.
+     */
+    static boolean run(IOthelloAI ai, ArrayList<GameState> positions, ArrayList<int[]> results) {
+        IEndgameSolver solver = ai instanceof IEndgameSolver ? (IEndgameSolver) ai : null;
+
+        System.out.printf("%4s %7s %6s %8s %5s %6s %14s %10s %12s%n",
+                "#", "empties", "score", "expected", "move", "result", "nodes", "time (ms)", "nodes/s");
+
+        int failed = 0;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            GameState s = positions.get(i);
+            int[] scores = results.get(i);
+            int size = s.getBoard().length;
+            int expected = scores[scores.length - 1];
+            int sign = s.getPlayerInTurn() == 1 ? 1 : -1;
+
+            Integer score = null;
+            Position move;
+            long startTime = System.nanoTime();
+            if (solver != null) {
+                score = sign * solver.solve(s);
+                move = solver.getBestMove();
+            } else {
+                move = ai.decideMove(new GameState(s.getBoard(), s.getPlayerInTurn()));
+            }
+            long nanos = System.nanoTime() - startTime;
+            totalNanos += nanos;
+
+            // A move is only wrong if its score is known to be lower than the best
+            boolean onBoard = move.col >= 0 && move.col < size && move.row >= 0 && move.row < size;
+            int moveScore = onBoard ? scores[move.col * size + move.row] : Integer.MIN_VALUE;
+            boolean right = (score == null || score == expected)
+                    && (moveScore == Integer.MIN_VALUE ? onBoard || s.legalMoves().isEmpty() : moveScore == expected);
+            if (!right) {
+                failed++;
+            }
+
+            String nodes = "-";
+            String rate = "-";
+            if (solver != null) {
+                totalNodes += solver.getNodes();
+                nodes = String.valueOf(solver.getNodes());
+                rate = String.valueOf(nodesPerSecond(solver.getNodes(), nanos));
+            }
+            System.out.printf("%4d %7d %6s %8s %5s %6s %14s %10.1f %12s%n", i + 1, empties(s),
+                    score == null ? "-" : String.format("%+d", score), String.format("%+d", expected), name(move, size),
+                    right ? "ok" : "WRONG", nodes, nanos / 1e6, rate);
+        }
+
+        System.out.println();
+        System.out.printf("%d of %d right, %s nodes in %.1f ms, %s nodes/s%n",
+                positions.size() - failed, positions.size(),
+                solver != null ? String.valueOf(totalNodes) : "-", totalNanos / 1e6,
+                solver != null ? String.valueOf(nodesPerSecond(totalNodes, totalNanos)) : "-");
+        return failed == 0;
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+    }
+
+    private static int empties(GameState s) {
+        int[] tokens = s.countTokens();
+        return s.getBoard().length * s.getBoard().length - tokens[0] - tokens[1];
+    }
+
+    /**
+     * Returns the name of the move, e.g. c4 for column 2, row 3, or "pass"
+     */
+    static String name(Position move, int size) {
+        if (move.col < 0 || move.col >= size || move.row < 0 || move.row >= size) {
+            return "pass";
+        }
+        return (char) ('a' + move.col) + String.valueOf(move.row + 1);
+    }
+
+    /**
+     * Reads all positions of the suite along with their scores (see run())
+     */
+    static void readSuite(String path, ArrayList<GameState> positions, ArrayList<int[]> results) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split(";");
+                if (parts.length < 2) {
+                    throw new IOException("Missing score in suite: " + line);
+                }
+
+                try {
+                    GameState s = GameState.parse(parts[0]);
+                    int size = s.getBoard().length;
+                    int[] scores = new int[size * size + 1];
+                    Arrays.fill(scores, Integer.MIN_VALUE);
+
+                    for (int i = 1; i < parts.length; i++) {
+                        String result = parts[i].trim();
+                        if (result.isEmpty()) {
+                            continue;
+                        }
+
+                        int colon = result.indexOf(':');
+                        int score = Integer.parseInt(result.substring(colon + 1).replace("+", ""));
+                        if (colon >= 0) {
+                            int col = Character.toLowerCase(result.charAt(0)) - 'a';
+                            int row = Integer.parseInt(result.substring(1, colon)) - 1;
+                            if (col < 0 || col >= size || row < 0 || row >= size) {
+                                throw new IllegalArgumentException("Unknown move " + result.substring(0, colon));
+                            }
+                            scores[col * size + row] = score;
+                        }
+                        scores[size * size] = Math.max(scores[size * size], score);
+                    }
+                    if (scores[size * size] == Integer.MIN_VALUE) {
+                        throw new IllegalArgumentException("No score given");
+                    }
+
+                    positions.add(s);
+                    results.add(scores);
+                } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+                    throw new IOException("Malformed line in suite: " + line, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a suite of positions with the given amount of empty positions, taken from
+     * randomly played games, with the exact score of every legal move as found by AlphaBetaAI.
+     */
+    static void generate(String path, int count, int empties, int size, Random random) throws IOException {
+        AlphaBetaAI solver = new AlphaBetaAI();
+        try (PrintWriter out = new PrintWriter(path)) {
+            int written = 0;
+            while (written < count) {
+                GameState s = new GameState(size, 1);
+                while (!s.isFinished() && empties(s) > empties) {
+                    ArrayList<Position> moves = s.legalMoves();
+                    if (moves.isEmpty()) {
+                        s.changePlayer();
+                        continue;
+                    }
+                    s.insertToken(moves.get(random.nextInt(moves.size())));
+                }
+                if (empties(s) != empties || s.legalMoves().isEmpty()) {
+                    continue; // The game ended early or the player in turn has to pass
+                }
+
+                StringBuilder line = new StringBuilder(s.toString());
+                int sign = s.getPlayerInTurn() == 1 ? 1 : -1;
+                ArrayList<Position> solved = new ArrayList<>();
+                for (Position move : s.legalMoves()) {
+                    if (solved.contains(move)) {
+                        continue; // legalMoves() lists a move once for every direction it captures in
+                    }
+                    solved.add(move);
+
+                    GameState child = new GameState(s.getBoard(), s.getPlayerInTurn());
+                    child.insertToken(move);
+                    line.append("; ").append(name(move, size)).append(':')
+                            .append(String.format("%+d", sign * solver.solve(child)));
+                }
+                out.println(line);
+                written++;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Runs an IOthelloAI in its own process, talking to the game (see ExternalEngineAI)
+ * through a simple line-based text protocol on stdin/stdout:
+ *
+ *   engine -> game:  ready <AI class>              once the AI has been created
+ *   game -> engine:  go <board> <X|O>              the position, in the notation of GameState
+ *   engine -> game:  move <col> <row> <millis>     the chosen move and the time used
+ *   game -> engine:  quit                          stops the engine
+ *
+ * Any failure is reported as a single line starting with "error".
+ *
+ * @see ExternalEngineAI
+ */
+public class EngineServer {
+
+    public static final String READY = "ready";
+    public static final String GO = "go";
+    public static final String MOVE = "move";
+    public static final String QUIT = "quit";
+    public static final String ERROR = "error";
+
+    /**
+     * Valid arguments: OthelloAI
+     */
+    public static void main(String[] args) throws IOException {
+        // Only protocol messages may be written to stdout, anything the AI
+        // prints itself is sent to stderr instead
+        PrintStream out = new PrintStream(System.out, true);
+        System.setOut(System.err);
+
+        if (args.length < 1) {
+            out.println(ERROR + " Usage: java EngineServer OthelloAI");
+            System.exit(1);
+        }
+
+        IOthelloAI ai;
+        try {
+            ai = (IOthelloAI) Class.forName(args[0]).getConstructor().newInstance();
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+            out.println(ERROR + " Could not create " + args[0] + ": " + e);
+            System.exit(1);
+            return;
+        }
+        out.println(READY + " " + args[0]);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+
+            if (line.equals(QUIT)) {
+                break;
+            } else if (line.startsWith(GO + " ")) {
+                out.println(decideMove(ai, line.substring(GO.length() + 1)));
+            } else if (!line.isEmpty()) {
+                out.println(ERROR + " Unknown command: " + line);
+            }
+        }
+    }
+
+    /**
+     * Asks the AI for a move in the given position and returns the response to send back
+     */
+    private static String decideMove(IOthelloAI ai, String notation) {
+        GameState s;
+        try {
+            s = GameState.parse(notation);
+        } catch (IllegalArgumentException e) {
+            return ERROR + " " + e.getMessage();
+        }
+
+        long startTime = System.currentTimeMillis();
+        Position move = ai.decideMove(s);
+        long time = System.currentTimeMillis() - startTime;
+
+        return MOVE + " " + move.col + " " + move.row + " " + time;
+    }
+}
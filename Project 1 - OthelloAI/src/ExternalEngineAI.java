@@ -0,0 +1,122 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An IOthelloAI that lets another AI decide its moves from a separate JVM (see EngineServer).
+ * This way the two players don't share heap, garbage collector or JIT state, and each
+ * of them can be started with its own JVM options.
+ */
+public class ExternalEngineAI implements IOthelloAI {
+
+    private final Process process;
+    private final BufferedReader in;
+    private final PrintWriter out;
+
+    private long lastMoveTime; // Time used by the engine to decide the last move (in ms)
+
+    /**
+     * Starts the given AI in a new JVM using the same classpath as this one
+     * @param aiClass The name of a class implementing IOthelloAI
+     * @param jvmOptions Options for the new JVM, e.g. -Xmx512m (may be empty)
+     */
+    public ExternalEngineAI(String aiClass, List<String> jvmOptions) throws IOException {
+        this(buildCommand(aiClass, jvmOptions));
+    }
+
+    /**
+     * Starts the given command, which should run an engine speaking the protocol of EngineServer
+     */
+    public ExternalEngineAI(List<String> command) throws IOException {
+        process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        out = new PrintWriter(process.getOutputStream(), true);
+
+        // Make sure the engine doesn't outlive the game
+        Runtime.getRuntime().addShutdownHook(new Thread(this::quit));
+
+        String response = in.readLine();
+        if (response == null || !response.startsWith(EngineServer.READY)) {
+            process.destroy();
+            throw new IOException("Engine " + command + " failed to start: " + response);
+        }
+    }
+
+    private static List<String> buildCommand(String aiClass, List<String> jvmOptions) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(EngineServer.class.getName());
+        command.add(aiClass);
+        return command;
+    }
+
+    /**
+     * Creates an engine from a command line parameter of the form <AI class>[:<JVM options>],
+     * where the JVM options are separated by spaces.
+     */
+    public static ExternalEngineAI fromParam(String param) throws IOException {
+        int separator = param.indexOf(':');
+        if (separator < 0) {
+            return new ExternalEngineAI(param, new ArrayList<>());
+        }
+
+        String options = param.substring(separator + 1).trim();
+        List<String> jvmOptions = options.isEmpty()
+                ? new ArrayList<>()
+                : Arrays.asList(options.split("\\s+"));
+        return new ExternalEngineAI(param.substring(0, separator), jvmOptions);
+    }
+
+    /**
+     * Sends the game state to the engine and waits for its move. If the engine fails
+     * the error is printed and (-1, -1) is returned.
+     */
+    public synchronized Position decideMove(GameState s) {
+        out.println(EngineServer.GO + " " + s);
+
+        try {
+            String response = in.readLine();
+            if (response == null) {
+                throw new IOException("Engine terminated unexpectedly");
+            }
+
+            String[] parts = response.split(" ");
+            if (!parts[0].equals(EngineServer.MOVE) || parts.length < 4) {
+                throw new IOException("Unexpected response from engine: " + response);
+            }
+
+            lastMoveTime = Long.parseLong(parts[3]);
+            return new Position(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            return new Position(-1, -1);
+        }
+    }
+
+    /**
+     * Returns the time the engine used to decide its last move (in ms)
+     */
+    public long getLastMoveTime() {
+        return lastMoveTime;
+    }
+
+    /**
+     * Stops the engine process
+     */
+    public synchronized void quit() {
+        if (process.isAlive()) {
+            out.println(EngineServer.QUIT);
+            process.destroy();
+        }
+    }
+}
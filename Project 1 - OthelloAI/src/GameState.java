@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -49,6 +50,74 @@ public class GameState {
 		this.currentPlayer = playerToTakeTurn;
 	}
 	
+	/**
+	 * Constructs the game state described by the given notation (see toString()).
+	 * @param notation The board given row by row with 'X' (black), 'O' (white) and '-' (empty),
+	 * followed by a space and the player in turn, 'X' or 'O'.
+	 * @throws IllegalArgumentException if the notation doesn't describe a square board and a player
+	 */
+	public static GameState parse(String notation){
+		String[] parts = notation.trim().split("\\s+");
+		if ( parts.length != 2 || !(parts[1].equals("X") || parts[1].equals("O")) )
+			throw new IllegalArgumentException("Expected a board and a player: " + notation);
+
+		String cells = parts[0];
+		int size = (int) Math.round(Math.sqrt(cells.length()));
+		if ( size * size != cells.length() )
+			throw new IllegalArgumentException("Board is not square: " + cells);
+
+		int[][] board = new int[size][size];
+		for (int row = 0; row < size; row++){
+			for (int col = 0; col < size; col++){
+				char cell = cells.charAt(row * size + col);
+				if ( cell == 'X' )
+					board[col][row] = 1;
+				else if ( cell == 'O' )
+					board[col][row] = 2;
+				else if ( cell != '-' )
+					throw new IllegalArgumentException("Unknown token '" + cell + "' in board: " + cells);
+			}
+		}
+		return new GameState(board, parts[1].equals("X") ? 1 : 2);
+	}
+	
+	/**
+	 * Returns the number of bytes encode() writes for a board of the given size: a bitboard of
+	 * black and of white tokens, one bit per position rounded up to whole bytes, and the player
+	 * in turn. An 8x8 board takes 17 bytes.
+	 */
+	public static int encodedSize(int size){
+		return 2 * ((size * size + 7) / 8) + 1;
+	}
+
+	/**
+	 * Constructs the game state stored at the current position of the buffer by encode(),
+	 * and moves the position past it.
+	 * @param size The number of columns (and rows) of the encoded board
+	 * @throws IllegalArgumentException if the bytes don't describe a valid game state
+	 */
+	public static GameState decode(ByteBuffer buffer, int size){
+		int[][] board = new int[size][size];
+		int bytes = (size * size + 7) / 8;
+		for (int player = 1; player <= 2; player++){
+			for (int i = 0; i < bytes; i++){
+				int value = buffer.get() & 0xff;
+				for (int bit = 0; value != 0; bit++, value >>>= 1){
+					if ( (value & 1) == 0 )
+						continue;
+					int index = i * 8 + bit; // index = col * size + row, as in BitBoard
+					if ( index >= size * size || board[index / size][index % size] != 0 )
+						throw new IllegalArgumentException("Invalid encoding of a board of size " + size);
+					board[index / size][index % size] = player;
+				}
+			}
+		}
+		int player = buffer.get();
+		if ( player != 1 && player != 2 )
+			throw new IllegalArgumentException("Invalid player in turn: " + player);
+		return new GameState(board, player);
+	}
+
 	//************ Getter methods *******************//
 	/**
 	 * Returns the array representing the board of this game state
@@ -147,6 +216,9 @@ public class GameState {
      * Returns a list of all the positions on the board that constitutes a legal move for the current player.
      */
     public ArrayList<Position> legalMoves(){
+    	if ( BitBoard.fits(size) )
+    		return legalMovesFromBitBoards();
+
     	ArrayList<Position> posPlaces = new ArrayList<>();
     	for (int i = 0; i < this.size; i++){
     		for (int j = 0; j < this.size; j++){
@@ -168,6 +240,69 @@ public class GameState {
     	return legalPlaces;
     }	
     
+    /**
+     * Returns the same list as legalMoves(), i.e. every legal move once for each direction
+     * it captures in, but generates the moves of all directions at once using bitboards.
+     */
+    private ArrayList<Position> legalMovesFromBitBoards(){
+    	long own = BitBoard.fromBoard(board, currentPlayer);
+    	long opponent = BitBoard.fromBoard(board, currentPlayer == 1 ? 2 : 1);
+    	long[] directionalMoves = new long[8];
+    	BitBoard.MOVES.directionalMoves(own, opponent, size, directionalMoves);
+
+    	long moves = 0;
+    	for (long m : directionalMoves)
+    		moves |= m;
+
+    	// Bit index col * size + row is the order the positions are scanned in by legalMoves()
+    	ArrayList<Position> legalPlaces = new ArrayList<Position>();
+    	for (; moves != 0; moves &= moves - 1){
+    		long bit = moves & -moves;
+    		int index = Long.numberOfTrailingZeros(bit);
+    		Position p = new Position(index / size, index % size);
+    		for (long m : directionalMoves){
+    			if ( (m & bit) != 0 )
+    				legalPlaces.add(p);
+    		}
+    	}
+    	return legalPlaces;
+    }
+    
+    /**
+     * Returns the notation of this game state, i.e. the board row by row with 'X' (black),
+     * 'O' (white) and '-' (empty), followed by a space and the player in turn ('X' or 'O').
+     */
+    @Override
+    public String toString(){
+    	StringBuilder sb = new StringBuilder(size * size + 2);
+    	for (int row = 0; row < size; row++){
+    		for (int col = 0; col < size; col++){
+    			sb.append(board[col][row] == 1 ? 'X' : board[col][row] == 2 ? 'O' : '-');
+    		}
+    	}
+    	return sb.append(currentPlayer == 1 ? " X" : " O").toString();
+    }
+    
+    /**
+     * Writes the compact encoding of this game state (see encodedSize()) at the current position
+     * of the buffer, and moves the position past it. Bit i of a bitboard is bit i % 8 of its
+     * byte i / 8, where i = col * size + row, so an 8x8 bitboard reads as a little-endian long.
+     */
+    public void encode(ByteBuffer buffer){
+    	for (int player = 1; player <= 2; player++){
+    		int value = 0;
+    		for (int i = 0; i < size * size; i++){
+    			if ( board[i / size][i % size] == player )
+    				value |= 1 << (i % 8);
+    			if ( i % 8 == 7 || i == size * size - 1 ){
+    				buffer.put((byte) value);
+    				value = 0;
+    			}
+    		}
+    	}
+    	buffer.put((byte) currentPlayer);
+    }
+    
     /**
      * Checks how many tokens of the opponent the player can capture in the direction given by deltaX and deltaY
      * if the player puts a token at the given position.
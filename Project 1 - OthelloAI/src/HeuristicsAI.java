@@ -1,18 +1,63 @@
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
 
 public class HeuristicsAI implements IOthelloAI {
 
+    // File containing tuned weights (see HeuristicsTuner), can be
+    // overridden with -Dothello.weights=<path>
+    static final String WEIGHTS_FILE = System.getProperty("othello.weights", "heuristics.properties");
+
     // In Othello corners are key to winning, therefore corners
     // are prioritized highly in our evaluation function
     private double cornerPriority = 0.8;
     private double tokensPriority = 0.2;
 
+    // Stable tokens can never be lost, but are not used unless a tuned
+    // weight for them has been found
+    private double stabilityPriority = 0;
+
     // Describes the maximum depth that will allow the recursive calls
     // to continue down, this also depends on the amount of legal moves
     // on each recursive call
     private int maxDepth = 75;
 
-    public HeuristicsAI() { }
+    // Only created when tracing is enabled (see SearchTracer)
+    private final SearchTracer tracer = SearchTracer.ENABLED ? new SearchTracer() : null;
+
+    // Evaluates the children of a node that are leaves together (see evaluateLeaves),
+    // reusing a single batch
+    private final IBatchEvaluator evaluator;
+    private PositionBatch leaves;
+
+    public HeuristicsAI() {
+        loadWeights(WEIGHTS_FILE);
+        evaluator = new HeuristicsEvaluator(cornerPriority, tokensPriority, stabilityPriority);
+    }
+
+    /**
+     * Overrides the default priorities with the ones found in the given
+     * weights file. If the file doesn't exist the defaults are kept.
+     */
+    private void loadWeights(String path) {
+        Properties weights = new Properties();
+
+        try (InputStream in = new FileInputStream(path)) {
+            weights.load(in);
+
+            cornerPriority = Double.parseDouble(weights.getProperty("cornerPriority", String.valueOf(cornerPriority)));
+            tokensPriority = Double.parseDouble(weights.getProperty("tokensPriority", String.valueOf(tokensPriority)));
+            stabilityPriority = Double.parseDouble(weights.getProperty("stabilityPriority", String.valueOf(stabilityPriority)));
+        } catch (FileNotFoundException e) {
+            // No tuned weights available, simply use the defaults
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not read weights from " + path + ", using defaults: " + e);
+        }
+    }
 
     public Position decideMove(GameState s) {
         long startTime = System.currentTimeMillis();
@@ -28,6 +73,10 @@ public class HeuristicsAI implements IOthelloAI {
 
         System.out.println("Took: " + (System.currentTimeMillis() - startTime));
 
+        if (SearchTracer.ENABLED) {
+            tracer.finish("HeuristicsAI");
+        }
+
         return chosenPosition;
     }
 
@@ -39,7 +88,13 @@ public class HeuristicsAI implements IOthelloAI {
      * player two.
      */
     private double calculateHeuristics(GameState s) {
-        return (cornerPriority * calculateCorners(s)) + (tokensPriority * calculateTokens(s));
+        double value = (cornerPriority * calculateCorners(s)) + (tokensPriority * calculateTokens(s));
+
+        if (stabilityPriority != 0) {
+            value += stabilityPriority * calculateStability(s);
+        }
+
+        return value;
     }
 
 
@@ -47,7 +102,7 @@ public class HeuristicsAI implements IOthelloAI {
      * Returns a number between -1 and 1, depending on which player
      * possesses the corners
      */
-    private double calculateCorners(GameState s) {
+    static double calculateCorners(GameState s) {
         int[][] board = s.getBoard();
 
         double value = 0;
@@ -71,9 +126,19 @@ public class HeuristicsAI implements IOthelloAI {
      * Returns a number between -1 and 1, depending on which player
      * has the most tokens
      */
-    private double calculateTokens(GameState s) {
+    static double calculateTokens(GameState s) {
         int[] tokens = s.countTokens();
-        return (tokens[0] - tokens[1]) / (tokens[0] + tokens[1]);
+        return (double) (tokens[0] - tokens[1]) / (tokens[0] + tokens[1]);
+    }
+
+    /**
+     * Returns a number between -1 and 1, depending on which player
+     * has the most stable tokens compared to the size of the board
+     */
+    static double calculateStability(GameState s) {
+        int[] stable = Stability.countStableTokens(s);
+        int positions = s.getBoard().length * s.getBoard().length;
+        return (double) (stable[0] - stable[1]) / positions;
     }
 
     /**
@@ -98,7 +163,11 @@ public class HeuristicsAI implements IOthelloAI {
                 childState.insertToken(move);
 
                 // Searches recursively for the best possible outcome from current move.
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
                 double currentAlpha = alphabetaHeuristics(childState, highestAlpha, lowestBeta, 0);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(0, move, highestAlpha, lowestBeta, currentAlpha, false, nodesBefore);
+                }
 
                 // If currentAlpha is larger that highestAlpha, then this position has
                 // a better outcome.
@@ -120,7 +189,11 @@ public class HeuristicsAI implements IOthelloAI {
                 childState.insertToken(move);
 
                 // Searches recursively for the best possible outcome from current move.
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
                 double currentBeta = alphabetaHeuristics(childState, highestAlpha, lowestBeta, 0);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(0, move, highestAlpha, lowestBeta, currentBeta, false, nodesBefore);
+                }
 
                 // If currentBeta is lower that lowestBeta, then this position has
                 // a better outcome.
@@ -142,11 +215,15 @@ public class HeuristicsAI implements IOthelloAI {
      * based on the player.
      */
     private double alphabetaHeuristics(GameState s, double alpha, double beta, int depth) {
+        if (SearchTracer.ENABLED) {
+            tracer.countNode();
+        }
+
         ArrayList<Position> moves = s.legalMoves();
 
         // If the game reaches finished state, it should simply return whether
-        // we've won or not
-        if (s.isFinished()) {
+        // we've won or not. (It can only be finished if the player in turn can't move)
+        if (moves.isEmpty() && s.isFinished()) {
             return calculateTokens(s);
         }
 
@@ -161,15 +238,27 @@ public class HeuristicsAI implements IOthelloAI {
             return calculateHeuristics(s);
         }
 
+        // Runs of children in which the search is cut off are evaluated together
+        // when the first of them is reached (see evaluateLeaves)
+        double[] leafValues = new double[moves.size()];
+        int evaluated = 0;
+
         // Player MAX
         if (s.getPlayerInTurn() == 1) {
             // Go through all available moves in the current game state
-            for (Position move : moves) {
-                GameState clonedState = new GameState(s.getBoard(), s.getPlayerInTurn());
-                clonedState.insertToken(move);
+            for (int i = 0; i < moves.size(); i++) {
+                Position move = moves.get(i);
+                if (i == evaluated) {
+                    evaluated = evaluateLeaves(s, moves, i, depth + 1, leafValues);
+                }
 
                 // Searches recursively for the highest possible alpha from current move.
-                alpha = Math.max(alpha, alphabetaHeuristics(clonedState, alpha, beta, depth + 1));
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                double value = searchChild(s, move, leafValues[i], alpha, beta, depth + 1);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(depth + 1, move, alpha, beta, value, beta <= value, nodesBefore);
+                }
+                alpha = Math.max(alpha, value);
 
                 // beta cut-off
                 if (beta <= alpha) {
@@ -181,12 +270,19 @@ public class HeuristicsAI implements IOthelloAI {
         } else {
             // Player MIN
             // Go through all available moves in the current game state
-            for (Position move : moves) {
-                GameState clonedState = new GameState(s.getBoard(), s.getPlayerInTurn());
-                clonedState.insertToken(move);
+            for (int i = 0; i < moves.size(); i++) {
+                Position move = moves.get(i);
+                if (i == evaluated) {
+                    evaluated = evaluateLeaves(s, moves, i, depth + 1, leafValues);
+                }
 
                 // Searches recursively for the lowest possible beta from current move.
-                beta = Math.min(beta, alphabetaHeuristics(clonedState, alpha, beta, depth + 1));
+                long nodesBefore = SearchTracer.ENABLED ? tracer.nodes() : 0;
+                double value = searchChild(s, move, leafValues[i], alpha, beta, depth + 1);
+                if (SearchTracer.ENABLED) {
+                    tracer.record(depth + 1, move, alpha, beta, value, value <= alpha, nodesBefore);
+                }
+                beta = Math.min(beta, value);
 
                 // alpha cut-off
                 if (beta <= alpha) {
@@ -197,4 +293,83 @@ public class HeuristicsAI implements IOthelloAI {
             return beta;
         }
     }
+
+    /**
+     * Returns the value of the child reached by the given move: its evaluation if it is a
+     * leaf (leafValue isn't NaN), and otherwise the result of searching it.
+     */
+    private double searchChild(GameState s, Position move, double leafValue, double alpha, double beta, int depth) {
+        if (!Double.isNaN(leafValue)) {
+            if (SearchTracer.ENABLED) {
+                tracer.countNode();
+            }
+            return leafValue;
+        }
+
+        GameState clonedState = new GameState(s.getBoard(), s.getPlayerInTurn());
+        clonedState.insertToken(move);
+        return alphabetaHeuristics(clonedState, alpha, beta, depth);
+    }
+
+    /**
+     * Evaluates the run of children, starting with the child reached by moves[from], in
+     * which alphabetaHeuristics would be cut off by the depth, as a single batch. The values
+     * are stored in leafValues by move. The run ends with the first child that has to be
+     * searched, whose value is NaN. Returns the index of the move after that child.
+     *
+     * Only runs of leaves are evaluated ahead, such that a child that has to be searched is
+     * only made ahead of time once per run. The children are made on bitboards, which is
+     * cheap compared to searching them, even if they turn out to be pruned.
+     */
+    private int evaluateLeaves(GameState s, ArrayList<Position> moves, int from, int depth, double[] leafValues) {
+        // Leaves are unlikely unless a child with as many moves as this position would be one
+        int size = s.getBoard().length;
+        if (!BitBoard.fits(size) || depth < maxDepth/moves.size()) {
+            Arrays.fill(leafValues, from, moves.size(), Double.NaN);
+            return moves.size();
+        }
+        if (leaves == null || leaves.getSize() != size) {
+            leaves = new PositionBatch(size, 32);
+        }
+
+        int player = s.getPlayerInTurn();
+        long own = BitBoard.fromBoard(s.getBoard(), player);
+        long opponent = BitBoard.fromBoard(s.getBoard(), player == 1 ? 2 : 1);
+        long[] childMoves = new long[8];
+
+        leaves.clear();
+        int end = from;
+        while (end < moves.size()) {
+            Position move = moves.get(end++);
+            long flipped = BitBoard.flips(own, opponent, move.col, move.row, size);
+            long childOwn = own | flipped | BitBoard.bit(move.col, move.row, size);
+            long childOpponent = opponent & ~flipped;
+
+            // Same conditions as alphabetaHeuristics uses to evaluate a position, where the
+            // number of moves counts a move once for every direction it captures in
+            BitBoard.MOVES.directionalMoves(childOpponent, childOwn, size, childMoves);
+            int moveCount = 0;
+            for (long m : childMoves) {
+                moveCount += Long.bitCount(m);
+            }
+            if (moveCount == 0 || depth < maxDepth/moveCount) {
+                leafValues[end - 1] = Double.NaN;
+                break;
+            }
+
+            if (player == 1) {
+                leaves.add(childOwn, childOpponent, 2);
+            } else {
+                leaves.add(childOpponent, childOwn, 1);
+            }
+        }
+
+        if (leaves.getCount() > 0) {
+            evaluator.evaluate(leaves);
+            for (int i = 0; i < leaves.getCount(); i++) {
+                leafValues[from + i] = leaves.getScore(i);
+            }
+        }
+        return end;
+    }
 }
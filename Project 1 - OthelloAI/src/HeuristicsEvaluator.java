@@ -0,0 +1,48 @@
+/**
+ * The evaluation of HeuristicsAI as an IBatchEvaluator, computed from the bitboards of
+ * the batch. Every position gets exactly the score HeuristicsAI.calculateHeuristics()
+ * gives it, a number between -1 and 1.
+ */
+public class HeuristicsEvaluator implements IBatchEvaluator {
+
+    private final double cornerPriority;
+    private final double tokensPriority;
+    private final double stabilityPriority;
+
+    public HeuristicsEvaluator(double cornerPriority, double tokensPriority, double stabilityPriority) {
+        this.cornerPriority = cornerPriority;
+        this.tokensPriority = tokensPriority;
+        this.stabilityPriority = stabilityPriority;
+    }
+
+    @Override
+    public void evaluate(PositionBatch batch) {
+        int size = batch.size;
+        long corners = BitBoard.bit(0, 0, size) | BitBoard.bit(0, size - 1, size)
+                | BitBoard.bit(size - 1, 0, size) | BitBoard.bit(size - 1, size - 1, size);
+        long[] black = batch.black;
+        long[] white = batch.white;
+        double[] scores = batch.scores;
+
+        for (int i = 0; i < batch.count; i++) {
+            long b = black[i];
+            long w = white[i];
+
+            // Every corner is worth 0.25, and the token count is relative to the tokens on the board
+            double cornerValue = 0.25 * (Long.bitCount(b & corners) - Long.bitCount(w & corners));
+            int tokens = Long.bitCount(b) + Long.bitCount(w);
+            double tokensValue = (double) (Long.bitCount(b) - Long.bitCount(w)) / tokens;
+            scores[i] = (cornerPriority * cornerValue) + (tokensPriority * tokensValue);
+        }
+
+        // Stability needs a flood fill per position, so it is only computed when it is used
+        if (stabilityPriority != 0) {
+            int positions = size * size;
+            for (int i = 0; i < batch.count; i++) {
+                int stable = Long.bitCount(Stability.stableTokens(black[i], white[i], size))
+                        - Long.bitCount(Stability.stableTokens(white[i], black[i], size));
+                scores[i] += stabilityPriority * ((double) stable / positions);
+            }
+        }
+    }
+}
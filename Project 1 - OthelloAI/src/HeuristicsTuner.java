@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline tuner for the evaluation weights of HeuristicsAI (Texel-style).
+ *
+ * Every position in the corpus is labelled with the final outcome of the game it
+ * was taken from. The evaluation is mapped to a win probability through a sigmoid,
+ * and the weights are fitted by gradient descent on the mean squared error between
+ * that probability and the actual outcome. The loss (and its gradient) is evaluated
+ * in parallel over chunks of the corpus using fork-join.
+ *
+ * The corpus is a text file with one position per line:
+ *     <board> <side to move> <final disc difference (black - white)>
+ * where the board and side to move are given in the notation of GameState.toString().
+ */
+public class HeuristicsTuner {
+
+    // Amount of positions a single fork-join task evaluates before splitting
+    private static final int CHUNK_SIZE = 4096;
+
+    // Names of the weights in the weights file, in the order of the features
+    static final String[] WEIGHT_NAMES = { "cornerPriority", "tokensPriority", "stabilityPriority" };
+
+    // The features of every position is stored in separate arrays, such that
+    // the hot loop doesn't touch any GameState objects
+    private final double[][] features;
+    private final double[] outcomes; // 1 (black won), 0.5 (tie) or 0 (white won)
+    private final int count;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // Scaling of the evaluation before the sigmoid is applied
+    private double k = 1;
+
+    public HeuristicsTuner(ArrayList<GameState> positions, ArrayList<Integer> results) {
+        count = positions.size();
+        features = new double[WEIGHT_NAMES.length][count];
+        outcomes = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            GameState s = positions.get(i);
+            features[0][i] = HeuristicsAI.calculateCorners(s);
+            features[1][i] = HeuristicsAI.calculateTokens(s);
+            features[2][i] = HeuristicsAI.calculateStability(s);
+
+            int result = results.get(i);
+            outcomes[i] = result > 0 ? 1 : result < 0 ? 0 : 0.5;
+        }
+    }
+
+    /**
+     * Valid arguments: corpus [weightsFile] [iterations]
+     * or: generate corpus games [size] to create a corpus from random games
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            int size = args.length >= 4 ? Integer.parseInt(args[3]) : 8;
+            generateCorpus(args[1], Integer.parseInt(args[2]), size, new Random());
+            return;
+        }
+
+        if (args.length < 1) {
+            System.err.println("Usage: java HeuristicsTuner corpus [weightsFile] [iterations]");
+            System.err.println("       java HeuristicsTuner generate corpus games [size]");
+            System.exit(1);
+        }
+
+        String output = args.length >= 2 ? args[1] : HeuristicsAI.WEIGHTS_FILE;
+        int iterations = args.length >= 3 ? Integer.parseInt(args[2]) : 1000;
+
+        ArrayList<GameState> positions = new ArrayList<>();
+        ArrayList<Integer> results = new ArrayList<>();
+        readCorpus(args[0], positions, results);
+        System.out.println("Read " + positions.size() + " positions from " + args[0]);
+
+        HeuristicsTuner tuner = new HeuristicsTuner(positions, results);
+        double[] weights = { 0.8, 0.2, 0 }; // The defaults of HeuristicsAI
+
+        long startTime = System.currentTimeMillis();
+        tuner.fitScale(weights);
+        double loss = tuner.tune(weights, iterations);
+        System.out.println("Tuned in " + (System.currentTimeMillis() - startTime) + " ms, loss: " + loss);
+        for (int i = 0; i < weights.length; i++) {
+            System.out.println("\t" + WEIGHT_NAMES[i] + ": " + weights[i]);
+        }
+
+        writeWeights(output, weights);
+        System.out.println("Weights written to " + output);
+    }
+
+    /**
+     * Fits the scaling constant k of the sigmoid to the given weights, such that
+     * the loss is measured against a sensible mapping from evaluation to outcome.
+     */
+    void fitScale(double[] weights) {
+        double best = Double.MAX_VALUE;
+        double bestK = k;
+
+        // Coarse search first, then a finer search around the best value. Every pass
+        // tries a fixed grid around the best value of the previous pass.
+        for (double step = 1; step >= 0.01; step /= 10) {
+            double center = bestK;
+            for (int i = -10; i <= 10; i++) {
+                double candidate = center + i * step;
+                if (candidate <= 0) {
+                    continue;
+                }
+
+                k = candidate;
+                double loss = evaluate(weights)[0];
+                if (loss < best) {
+                    best = loss;
+                    bestK = candidate;
+                }
+            }
+            k = bestK;
+        }
+    }
+
+    /**
+     * Runs gradient descent on the given weights (which are updated in place)
+     * and returns the final loss.
+     */
+    double tune(double[] weights, int iterations) {
+        double rate = 1;
+        double[] result = evaluate(weights);
+
+        for (int i = 0; i < iterations && rate > 1e-6; i++) {
+            double[] candidate = new double[weights.length];
+            for (int w = 0; w < weights.length; w++) {
+                candidate[w] = weights[w] - rate * result[w + 1];
+            }
+            double[] candidateResult = evaluate(candidate);
+
+            // Only accept steps that improve the loss, otherwise take smaller steps
+            if (candidateResult[0] < result[0]) {
+                System.arraycopy(candidate, 0, weights, 0, weights.length);
+                result = candidateResult;
+                rate *= 1.2;
+            } else {
+                rate /= 2;
+            }
+        }
+
+        return result[0];
+    }
+
+    /**
+     * Returns the loss followed by its gradient for each of the weights.
+     */
+    double[] evaluate(double[] weights) {
+        double[] sums = pool.invoke(new LossTask(weights, 0, count));
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] /= count;
+        }
+        return sums;
+    }
+
+    /**
+     * Task that sums the squared error and its gradient over a range of the corpus,
+     * splitting the range until it is small enough to be evaluated directly.
+     */
+    private class LossTask extends RecursiveTask<double[]> {
+        static final long serialVersionUID = 1L;
+
+        private final double[] weights;
+        private final int from;
+        private final int to;
+
+        LossTask(double[] weights, int from, int to) {
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                LossTask left = new LossTask(weights, from, middle);
+                left.fork();
+                double[] right = new LossTask(weights, middle, to).compute();
+                double[] sums = left.join();
+
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += right[i];
+                }
+                return sums;
+            }
+
+            double[] sums = new double[weights.length + 1];
+            for (int i = from; i < to; i++) {
+                double eval = 0;
+                for (int f = 0; f < weights.length; f++) {
+                    eval += weights[f] * features[f][i];
+                }
+                double sigmoid = 1 / (1 + Math.exp(-k * eval));
+                double error = outcomes[i] - sigmoid;
+
+                // Derivative of the squared error with respect to the evaluation
+                double slope = -2 * error * sigmoid * (1 - sigmoid) * k;
+
+                sums[0] += error * error;
+                for (int f = 0; f < weights.length; f++) {
+                    sums[f + 1] += slope * features[f][i];
+                }
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * Reads all positions of the corpus along with the final disc difference of
+     * the games they were taken from.
+     */
+    static void readCorpus(String path, ArrayList<GameState> positions, ArrayList<Integer> results) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                if (parts.length < 3) {
+                    throw new IOException("Malformed line in corpus: " + line);
+                }
+
+                try {
+                    positions.add(GameState.parse(parts[0] + " " + parts[1]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed position in corpus: " + line, e);
+                }
+                results.add(Integer.parseInt(parts[2]));
+            }
+        }
+    }
+
+    /**
+     * Writes a corpus made up of every position from the given amount of randomly
+     * played games, labelled with the outcome of the game.
+     */
+    static void generateCorpus(String path, int games, int size, Random random) throws IOException {
+        try (PrintWriter out = new PrintWriter(path)) {
+            for (int game = 0; game < games; game++) {
+                GameState s = new GameState(size, 1);
+                ArrayList<String> seen = new ArrayList<>();
+
+                while (!s.isFinished()) {
+                    ArrayList<Position> moves = s.legalMoves();
+                    if (moves.isEmpty()) {
+                        s.changePlayer();
+                        continue;
+                    }
+
+                    seen.add(s.toString());
+                    s.insertToken(moves.get(random.nextInt(moves.size())));
+                }
+
+                int[] tokens = s.countTokens();
+                for (String position : seen) {
+                    out.println(position + " " + (tokens[0] - tokens[1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the weights in the format read by HeuristicsAI.
+     */
+    static void writeWeights(String path, double[] weights) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < weights.length; i++) {
+            properties.setProperty(WEIGHT_NAMES[i], String.valueOf(weights[i]));
+        }
+
+        try (OutputStream out = new FileOutputStream(path)) {
+            properties.store(out, "Evaluation weights for HeuristicsAI");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Interface of evaluation functions that score a whole batch of positions at once,
+ * e.g. all leaves below a node of the search, so the evaluation runs as a tight loop
+ * over the arrays of the batch instead of once per call deep inside the recursion.
+ */
+public interface IBatchEvaluator {
+
+    /**
+     * Stores the score of every position of the batch in its scores, where positive
+     * scores favour player 1 (black) and negative scores favour player 2 (white)
+     */
+    void evaluate(PositionBatch batch);
+}
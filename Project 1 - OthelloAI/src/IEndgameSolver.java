@@ -0,0 +1,23 @@
+/**
+ * Interface of AIs that can solve a position exactly, i.e. find the final score when
+ * both players play perfectly. Used by EndgameSuite to verify and benchmark solvers.
+ */
+public interface IEndgameSolver {
+
+    /**
+     * Returns the final score (tokens of player 1 minus tokens of player 2) of the given
+     * position with perfect play. The given game state isn't changed.
+     */
+    int solve(GameState s);
+
+    /**
+     * Returns a best move found by the last call to solve(), or (-1, -1) if the player
+     * in turn had to pass
+     */
+    Position getBestMove();
+
+    /**
+     * Returns the number of positions searched by the last call to solve()
+     */
+    long getNodes();
+}
@@ -0,0 +1,30 @@
+/**
+ * Generates the legal moves of a position given as bitboards (see BitBoard).
+ *
+ * The moves are found for each of the 8 directions separately: a move captures in a
+ * direction if it is followed by a run of opponent tokens ending in an own token.
+ * BitBoard.MOVES holds the fastest implementation available at runtime.
+ */
+public interface IMoveGenerator {
+
+    /**
+     * Stores, for each of the 8 directions, the bitboard of the empty positions at which
+     * the player owning own would capture in that direction
+     * @param moves Array of at least 8 elements the bitboards are stored in
+     */
+    void directionalMoves(long own, long opponent, int size, long[] moves);
+
+    /**
+     * Returns the bitboard of all legal moves of the player owning own
+     */
+    default long legalMoves(long own, long opponent, int size) {
+        long[] moves = new long[8];
+        directionalMoves(own, opponent, size, moves);
+
+        long all = 0;
+        for (long m : moves) {
+            all |= m;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the move generators on positions from randomly played games, by the time
+ * used per position to find all legal moves and the moves of every direction.
+ * GameState.legalMoves() is measured as well, as that is what the AIs call.
+ *
+ * Run with --add-modules jdk.incubator.vector and VectorMoveGenerator on the classpath
+ * to include the vectorized generator (see VectorMoveGenerator).
+ *
+ * Valid arguments: [positions] [size] [rounds]
+ */
+public class MoveGenerationBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length >= 1 ? Integer.parseInt(args[0]) : 100000;
+        int size = args.length >= 2 ? Integer.parseInt(args[1]) : 8;
+        int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 5;
+        if (!BitBoard.fits(size)) {
+            System.err.println("Board size " + size + " cannot be represented as bitboards");
+            System.exit(1);
+        }
+
+        // The positions are kept as bitboards of the player in turn and the opponent
+        ArrayList<GameState> states = randomPositions(count, size, new Random(0));
+        long[] own = new long[count];
+        long[] opponent = new long[count];
+        for (int i = 0; i < count; i++) {
+            GameState s = states.get(i);
+            own[i] = BitBoard.fromBoard(s.getBoard(), s.getPlayerInTurn());
+            opponent[i] = BitBoard.fromBoard(s.getBoard(), s.getPlayerInTurn() == 1 ? 2 : 1);
+        }
+
+        ArrayList<IMoveGenerator> generators = new ArrayList<>();
+        generators.add(new ScalarMoveGenerator());
+        if (!(BitBoard.MOVES instanceof ScalarMoveGenerator)) {
+            generators.add(BitBoard.MOVES);
+        } else {
+            System.out.println("VectorMoveGenerator is not available, only measuring the scalar generator");
+        }
+
+        System.out.println(count + " positions of size " + size + ", best of " + rounds + " rounds");
+        for (IMoveGenerator generator : generators) {
+            String name = generator.getClass().getSimpleName();
+            report(name + ".legalMoves", rounds, count, () -> {
+                long checksum = 0;
+                for (int i = 0; i < count; i++) {
+                    checksum += generator.legalMoves(own[i], opponent[i], size);
+                }
+                return checksum;
+            });
+
+            long[] moves = new long[8];
+            report(name + ".directionalMoves", rounds, count, () -> {
+                long checksum = 0;
+                for (int i = 0; i < count; i++) {
+                    generator.directionalMoves(own[i], opponent[i], size, moves);
+                    checksum += moves[0] ^ moves[7];
+                }
+                return checksum;
+            });
+        }
+
+        report("GameState.legalMoves", rounds, count, () -> {
+            long checksum = 0;
+            for (GameState s : states) {
+                checksum += s.legalMoves().size();
+            }
+            return checksum;
+        });
+    }
+
+    private interface Task {
+        long run(); // Returns a checksum, such that the work can't be optimized away
+    }
+
+    /**
+     * Runs the task the given number of rounds after a warm-up and prints the fastest round
+     */
+    private static void report(String name, int rounds, int count, Task task) {
+        long checksum = task.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long startTime = System.nanoTime();
+            checksum += task.run();
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        System.out.printf("%-40s %8.1f ns/position   (checksum %x)%n", name, (double) best / count, checksum);
+    }
+
+    /**
+     * Returns positions in which the player in turn has a legal move, taken from randomly played games
+     */
+    private static ArrayList<GameState> randomPositions(int count, int size, Random random) {
+        ArrayList<GameState> positions = new ArrayList<>(count);
+        while (positions.size() < count) {
+            GameState s = new GameState(size, 1);
+            while (positions.size() < count && !s.isFinished()) {
+                ArrayList<Position> moves = s.legalMoves();
+                if (moves.isEmpty()) {
+                    s.changePlayer();
+                    continue;
+                }
+                positions.add(new GameState(s.getBoard(), s.getPlayerInTurn()));
+                s.insertToken(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        return positions;
+    }
+}
@@ -1,5 +1,8 @@
 import javax.swing.*;
 
+import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.lang.reflect.*;
 
@@ -12,6 +15,7 @@ import java.lang.reflect.*;
 public class Othello
 {
     public static String HUMAN_CMD = "human";
+    public static String EXTERNAL_PREFIX = "external:";
 	
 	/**
      * Valid arguments: ai1 ai2 size 
@@ -49,6 +53,9 @@ public class Othello
             } catch(InvocationTargetException ite) {
                 errMsg = "Your GameInstance constructor threw an exception: " + ite.toString();
                 err = true;
+            } catch(IOException ioe) {
+                errMsg = "Could not start external engine: " + ioe.getMessage();
+                err = true;
             }
         	
             if(!err && ai1 == null && ai2 == null) {
@@ -80,16 +87,21 @@ public class Othello
         try{
         	OthelloGUI g = new OthelloGUI(ai1, ai2, size, ai1 == null);
 
+        	// Shrink the squares so the board fits on the screen, scrolling if it can't shrink enough
+        	Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        	g.setTileSize(OthelloGUI.fitTileSize(size, new Dimension(screen.width - 50, screen.height - 50)));
+
         	// Setup of the frame containing the game
         	JFrame f = new JFrame();
-        	f.setSize((size+2)*100,(size+2)*100);
         	f.setTitle("Othello");
         	f.setDefaultCloseOperation (JFrame.EXIT_ON_CLOSE);
-        	f.getContentPane().add(g);    
+        	f.getContentPane().add(new JScrollPane(g));
+        	f.pack();
+        	f.setSize(Math.min(f.getWidth(), screen.width), Math.min(f.getHeight(), screen.height));
         	f.setVisible(true);
         }
         catch (IOException e){
-        	errMsg = "Images not found at " + System.getProperty("user.dir") + "\\imgs";
+        	errMsg = e.getMessage();
         	err = true;
         }
 
@@ -109,20 +121,25 @@ public class Othello
         System.err.println("Usage: java PlayOthello OthelloAI1 OthelloAI2 [size]");
         System.err.println("\tOthelloAI1\t - Either '" + HUMAN_CMD +"' indicating a human will be playing, or specify an OthelloAI class implementing IOthelloAI.");
         System.err.println("\tOthelloAI2\t - Must always specify an OthelloAI class implementing IOthelloAI.");
+        System.err.println("\t\t\t   Prefix an OthelloAI with '" + EXTERNAL_PREFIX + "' to run it in a separate JVM, optionally");
+        System.err.println("\t\t\t   followed by ':' and options for that JVM, e.g. \"" + EXTERNAL_PREFIX + "HeuristicsAI:-Xmx1g\".");
         System.err.println("\tsize\t\t - Must be an even integer greater or equal to 4. Defaults to 8.");
     }
 
     /**
      * Returns an instance of the specified class implementing IOthelloLogic
-     * @param cmdParam String from the command line that should be a path to a java class implementing IOthelloLogic
+     * @param cmdParam String from the command line that should be a path to a java class implementing IOthelloLogic,
+     * possibly prefixed with EXTERNAL_PREFIX to run it in a separate JVM
      * @throws TBD
      */
     public static IOthelloAI parseGameLogicParam(String cmdParam) 
             throws ClassNotFoundException, NoSuchMethodException, 
                    InstantiationException, IllegalAccessException,
-                   InvocationTargetException {    	
+                   InvocationTargetException, IOException {    	
     	IOthelloAI retGL = null;
-        if(!cmdParam.equalsIgnoreCase(HUMAN_CMD))
+        if(cmdParam.startsWith(EXTERNAL_PREFIX))
+            retGL = ExternalEngineAI.fromParam(cmdParam.substring(EXTERNAL_PREFIX.length()));
+        else if(!cmdParam.equalsIgnoreCase(HUMAN_CMD))
             retGL = (IOthelloAI)Class.forName(cmdParam).getConstructor().newInstance();
     	return retGL;
     }
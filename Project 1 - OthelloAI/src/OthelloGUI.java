@@ -1,9 +1,10 @@
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.Consumer;
 
 /**
  * GUI to show the Othello game and to listen for input for the user/human player. When it is the user's turn, 
@@ -17,43 +18,54 @@ public class OthelloGUI extends JComponent implements MouseListener
 {
     static final long 	serialVersionUID = 1234567890;
 	static final int 	imgSize = 100;
+	static final int 	MIN_TILE_SIZE = 8; // Smallest size a square can be drawn at
 	
 	private GameState state;		// The state of the game
     private int size;				// Number of rows and columns on the board
     private boolean humanPlayer;	// Whether a human player is playing or not
     private IOthelloAI ai1;			// The AI for player 1 if there are no human player
     private IOthelloAI ai2;			// The AI for player 2 
+    private int tileSize = imgSize;	// Size a square is drawn at
 
-    // Images for drawing the game board
+    // Images for drawing the game board, which are null until they have been loaded
     private Image 		part, blackPion, whitePion, background;
     private Image 		border_left, border_right, border_top, border_bottom;
     private Image 		corner_left_top, corner_left_bottom, corner_right_top, corner_right_bottom;
     private Image 		blackWon, whiteWon, tie;
+    private Image[] 		tiles; // [player] a square with its token and grid
+
+    // The images scaled to every tile size used so far, by tile size and original image
+    private HashMap<Integer, HashMap<Image, Image>> scaledImages = new HashMap<>();
+
+    // The players of the squares when they were last painted, used to repaint only those that changed
+    private int[][] 		drawn;
 	
     /**
-     * Initializes game
+     * Initializes game. The GUI can be shown right away: the images are decoded in the
+     * background and drawn as they arrive.
      * @param player1 The AI for player 1 (black); this argument is ignored if there is indeed a human player.
      * @param player2 The AI for player 2 (white).
      * @param size The number of rows and columns of the game board. Should be an
      * even number greater or equal to 4.
      * @param humanPlayer true if there is a (one) human player
+     * @throws IOException if one of the images can't be found
      */
     public OthelloGUI(IOthelloAI ai1, IOthelloAI ai2, int size, boolean humanPlayer) throws IOException{
-   		part = ImageIO.read(new File("imgs/maze.png"));
-    	blackPion = ImageIO.read(new File("imgs/blackPion.png"));
-    	whitePion = ImageIO.read(new File("imgs/whitePion.png"));
-    	background = ImageIO.read(new File("imgs/background.png"));
-    	border_left = ImageIO.read(new File("imgs/border_left.png"));
-    	border_right = ImageIO.read(new File("imgs/border_right.png"));
-    	border_top = ImageIO.read(new File("imgs/border_top.png"));
-    	border_bottom = ImageIO.read(new File("imgs/border_bottom.png"));
-    	corner_left_top = ImageIO.read(new File("imgs/corner_left_top.png"));
-    	corner_left_bottom = ImageIO.read(new File("imgs/corner_left_bottom.png"));
-    	corner_right_top = ImageIO.read(new File("imgs/corner_right_top.png"));
-    	corner_right_bottom = ImageIO.read(new File("imgs/corner_right_bottom.png"));
-    	blackWon = ImageIO.read(new File("imgs/blackWon.png"));
-    	whiteWon = ImageIO.read(new File("imgs/whiteWon.png"));
-    	tie = ImageIO.read(new File("imgs/tie.png"));
+    	load("maze.png", image -> part = image);
+    	load("blackPion.png", image -> blackPion = image);
+    	load("whitePion.png", image -> whitePion = image);
+    	load("background.png", image -> background = image);
+    	load("border_left.png", image -> border_left = image);
+    	load("border_right.png", image -> border_right = image);
+    	load("border_top.png", image -> border_top = image);
+    	load("border_bottom.png", image -> border_bottom = image);
+    	load("corner_left_top.png", image -> corner_left_top = image);
+    	load("corner_left_bottom.png", image -> corner_left_bottom = image);
+    	load("corner_right_top.png", image -> corner_right_top = image);
+    	load("corner_right_bottom.png", image -> corner_right_bottom = image);
+    	load("blackWon.png", image -> blackWon = image);
+    	load("whiteWon.png", image -> whiteWon = image);
+    	load("tie.png", image -> tie = image);
 		
     	this.size = size;
     	this.state = new GameState(size, 1); // Player 1 (human if there is any) goes first
@@ -62,48 +74,200 @@ public class OthelloGUI extends JComponent implements MouseListener
     		this.ai1 = ai1;
     	this.ai2=ai2;
     	this.addMouseListener(this);
+    	this.setDoubleBuffered(true);
+
+    	// Zoom with + and -
+    	getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('+'), "zoomIn");
+    	getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('-'), "zoomOut");
+    	getActionMap().put("zoomIn", new AbstractAction() {
+    		public void actionPerformed(ActionEvent e) { setTileSize(tileSize * 5 / 4 + 1); }
+    	});
+    	getActionMap().put("zoomOut", new AbstractAction() {
+    		public void actionPerformed(ActionEvent e) { setTileSize(tileSize * 4 / 5); }
+    	});
+    }
+
+    /**
+     * Starts decoding the given image, which is stored with the setter and drawn on the
+     * event dispatch thread when it is ready. The squares are drawn once all of their
+     * images are ready.
+     */
+    private void load(String name, Consumer<Image> setter) throws IOException{
+    	ImageLoader.load(ImageLoader.find(name)).whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+    		if ( error != null ){
+    			System.err.println("Could not load " + name + ": " + error.getCause());
+    			return;
+    		}
+    		setter.accept(image);
+
+    		if ( tiles == null && part != null && background != null && blackPion != null && whitePion != null ){
+    			tiles = new Image[3];
+    			tiles[0] = createTile(background);
+    			tiles[1] = createTile(blackPion); // black = player1
+    			tiles[2] = createTile(whitePion); // white = player2
+    		}
+    		repaint();
+    	}));
+    }
+
+    /**
+     * Returns the image of a square with the given token (or background) and the grid on top
+     */
+    private Image createTile(Image token){
+    	BufferedImage tile = new BufferedImage(imgSize, imgSize, BufferedImage.TYPE_INT_ARGB);
+    	Graphics g = tile.getGraphics();
+    	g.drawImage(token, 0, 0, this);
+    	g.drawImage(part, 0, 0, this);
+    	g.dispose();
+    	return tile;
+    }
+
+    /**
+     * Returns the largest tile size (at most the size of the images) at which a board
+     * of the given size, with its borders, fits in the given area
+     */
+    static int fitTileSize(int size, Dimension area){
+    	int fit = Math.min(area.width, area.height) / (size + 2);
+    	return Math.max(MIN_TILE_SIZE, Math.min(imgSize, fit));
     }
 
     /**
-     * Draws the current game board and shows if someone won.
+     * Sets the size the squares are drawn at, between MIN_TILE_SIZE and the size of the images
+     */
+    public void setTileSize(int tileSize){
+    	this.tileSize = Math.max(MIN_TILE_SIZE, Math.min(imgSize, tileSize));
+    	revalidate();
+    	repaint();
+    }
+
+    public int getTileSize(){
+    	return tileSize;
+    }
+
+    @Override
+    public Dimension getPreferredSize(){
+    	Insets in = getInsets();
+    	int side = (size + 2) * tileSize;
+    	return new Dimension(in.left + in.right + side, in.top + in.bottom + side);
+    }
+
+    /**
+     * Returns the given image scaled by the current tile size. Scaled images are kept,
+     * so every image is only scaled once for every tile size.
+     */
+    private Image scaled(Image image){
+    	if ( tileSize == imgSize )
+    		return image;
+    	return scaledImages.computeIfAbsent(tileSize, t -> new HashMap<>())
+    			.computeIfAbsent(image, original -> scale(original,
+    					original.getWidth(null) * tileSize / imgSize, original.getHeight(null) * tileSize / imgSize));
+    }
+
+    /**
+     * Scales an image to the given size. Shrinking is done in steps of at most half
+     * the size, as bilinear filtering skips pixels when shrinking more at once.
+     */
+    private static Image scale(Image image, int width, int height){
+    	Image scaled = image;
+    	int currentWidth = image.getWidth(null), currentHeight = image.getHeight(null);
+    	do {
+    		currentWidth = Math.max(currentWidth / 2, width);
+    		currentHeight = Math.max(currentHeight / 2, height);
+    		BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB);
+    		Graphics2D g = next.createGraphics();
+    		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    		g.drawImage(scaled, 0, 0, currentWidth, currentHeight, null);
+    		g.dispose();
+    		scaled = next;
+    	} while ( currentWidth > width || currentHeight > height );
+    	return scaled;
+    }
+
+    /**
+     * Returns the image at the given position, where positions 0 and size+1 are the borders,
+     * or null if it hasn't been loaded yet
+     */
+    private Image imageAt(int x, int y, int[][] gameBoard){
+    	int last = size + 1;
+    	if ( x == 0 )
+    		return y == 0 ? corner_left_top : y == last ? corner_left_bottom : border_left;
+    	if ( x == last )
+    		return y == 0 ? corner_right_top : y == last ? corner_right_bottom : border_right;
+    	if ( y == 0 )
+    		return border_top;
+    	if ( y == last )
+    		return border_bottom;
+    	return tiles == null ? null : tiles[gameBoard[x-1][y-1]];
+    }
+
+    private int[][] copyOf(int[][] gameBoard){
+    	int[][] copy = new int[size][];
+    	for (int c = 0; c < size; c++)
+    		copy[c] = gameBoard[c].clone();
+    	return copy;
+    }
+
+    /**
+     * Repaints the squares whose player changed since they were last painted, or
+     * everything when the game is finished, to show who won.
+     */
+    private void refresh(){
+    	int[][] gameBoard = state.getBoard();
+    	if ( drawn == null || state.isFinished() ){
+    		drawn = copyOf(gameBoard);
+    		repaint();
+    		return;
+    	}
+
+    	Insets in = getInsets();
+    	Rectangle changed = null;
+    	for (int c = 0; c < size; c++){
+    		for (int r = 0; r < size; r++){
+    			if ( gameBoard[c][r] == drawn[c][r] )
+    				continue;
+    			drawn[c][r] = gameBoard[c][r];
+
+    			Rectangle square = new Rectangle(in.left+tileSize+tileSize*c, in.top+tileSize+tileSize*r, tileSize, tileSize);
+    			changed = changed == null ? square : changed.union(square);
+    		}
+    	}
+    	if ( changed != null )
+    		repaint(changed);
+    }
+
+    /**
+     * Draws the current game board and shows if someone won. Only the squares and borders
+     * inside the area that needs to be painted (e.g. the visible part in a scroll pane) are drawn.
      */
     public void paint(Graphics g){
-		int[][] gameBoard = state.getBoard();
-    	this.setDoubleBuffered(true);
+    	int[][] gameBoard = state.getBoard();
+    	if ( drawn == null )
+    		drawn = copyOf(gameBoard);
+
     	Insets in = getInsets();               
+    	Rectangle clip = g.getClipBounds();
+    	if ( clip == null )
+    		clip = new Rectangle(0, 0, getWidth(), getHeight());
     	g.translate(in.left, in.top);            
+    	clip.translate(-in.left, -in.top);
 
-    	for (int c = 0; c < size; c++){
-    		for (int r = 0; r < size; r++){
-    			int player = gameBoard[c][r];
-    			if (player == 0) // background
-    				g.drawImage(background, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			else if (player == 2) // white = player2
-    				g.drawImage(whitePion, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			else // black = player1
-    				g.drawImage(blackPion, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			g.drawImage(part, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			if (c == 0){
-    				g.drawImage(border_left, 0, imgSize+imgSize*r, this); 
-    				g.drawImage(border_right, size*imgSize+imgSize, imgSize+imgSize*r, this); 
-    			}
+    	int firstX = Math.max(0, Math.floorDiv(clip.x, tileSize));
+    	int lastX = Math.min(size + 1, Math.floorDiv(clip.x + clip.width - 1, tileSize));
+    	int firstY = Math.max(0, Math.floorDiv(clip.y, tileSize));
+    	int lastY = Math.min(size + 1, Math.floorDiv(clip.y + clip.height - 1, tileSize));
+    	for (int x = firstX; x <= lastX; x++){
+    		for (int y = firstY; y <= lastY; y++){
+    			Image image = imageAt(x, y, gameBoard);
+    			if ( image != null )
+    				g.drawImage(scaled(image), x*tileSize, y*tileSize, this);
     		}
-    		g.drawImage(border_top, imgSize+imgSize*c, 0, this);
-    		g.drawImage(border_bottom, imgSize+imgSize*c, size*imgSize+imgSize, this);
     	}
-    	g.drawImage(corner_left_top, 0, 0, this);
-    	g.drawImage(corner_left_bottom, 0, size*imgSize+imgSize, this);
-    	g.drawImage(corner_right_top, imgSize+imgSize*size, 0, this);
-    	g.drawImage(corner_right_bottom, imgSize+imgSize*size, size*imgSize+imgSize, this);
 		
     	if ( state.isFinished() ){
     		int[] tokens = state.countTokens();
-    		if ( tokens[0] > tokens[1] )
-    			g.drawImage(blackWon, size*imgSize/2-(imgSize/2), size*imgSize/2+(imgSize/4), this);
-    		else if ( tokens[0] < tokens[1] )
-    			g.drawImage(whiteWon, size*imgSize/2-(imgSize/2), size*imgSize/2+(imgSize/4), this);
-    		else
-    			g.drawImage(tie, size*imgSize/2-(imgSize/2), size*imgSize/2+(imgSize/4), this);
+    		Image result = tokens[0] > tokens[1] ? blackWon : tokens[0] < tokens[1] ? whiteWon : tie;
+    		if ( result != null )
+    			g.drawImage(scaled(result), size*tileSize/2-(tileSize/2), size*tileSize/2+(tileSize/4), this);
     	}		
     }
 
@@ -114,7 +278,7 @@ public class OthelloGUI extends JComponent implements MouseListener
     		if ( state.insertToken(place) ){ // Chosen move is legal
 				boolean nextPlayerCannotMove = state.legalMoves().isEmpty();
    				if ( nextPlayerCannotMove ){ // The next player cannot move
-					repaint();
+					refresh();
    					state.changePlayer();
    					if ( humanPlayer ){ // If there is a human involved, (s)he needs to know this
    	  					boolean canMoveAfterwards = !state.legalMoves().isEmpty();
@@ -128,7 +292,7 @@ public class OthelloGUI extends JComponent implements MouseListener
  			}
    			else 
    				illegalMoveAttempted(place); 		
-    		repaint();
+    		refresh();
     	}
     }
     
@@ -165,10 +329,11 @@ public class OthelloGUI extends JComponent implements MouseListener
      * Translate the given clicks on the screen to a position on the game board
      */
     private Position humanSelectedPlace(MouseEvent e){
-    	int x = e.getX();
-    	int y = e.getY();
-    	if ( imgSize <= x && x <= imgSize*(size+1) && imgSize <= y && y <= imgSize*(size+1) ){ 
-    		return new Position((x-imgSize)/imgSize, (y-imgSize)/imgSize);
+    	Insets in = getInsets();
+    	int x = e.getX() - in.left;
+    	int y = e.getY() - in.top;
+    	if ( tileSize <= x && x < tileSize*(size+1) && tileSize <= y && y < tileSize*(size+1) ){ 
+    		return new Position((x-tileSize)/tileSize, (y-tileSize)/tileSize);
     	}
     	return new Position(-1,-1);
     }
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * A batch of positions to be evaluated together by an IBatchEvaluator.
+ *
+ * The positions are stored as a struct of arrays: the bitboards of black, the bitboards of
+ * white and the players in turn are kept in separate arrays, and the evaluator stores the
+ * scores in a fourth. An evaluator can then run through each array from start to end
+ * without following a reference per position. A batch is meant to be reused, so its
+ * arrays are only reallocated when it outgrows them.
+ */
+public class PositionBatch {
+
+    final int size;   // The number of columns (and rows) of the positions
+    long[] black;
+    long[] white;
+    byte[] players;
+    double[] scores;
+    int count;
+
+    /**
+     * Creates an empty batch for positions of the given board size
+     * @param capacity The number of positions that fit before the arrays are grown
+     */
+    public PositionBatch(int size, int capacity) {
+        if (!BitBoard.fits(size)) {
+            throw new IllegalArgumentException("Board size " + size + " cannot be stored as bitboards");
+        }
+        this.size = size;
+        black = new long[capacity];
+        white = new long[capacity];
+        players = new byte[capacity];
+        scores = new double[capacity];
+    }
+
+    /**
+     * Adds the position and returns its index in the batch
+     */
+    public int add(long blackBits, long whiteBits, int player) {
+        if (count == black.length) {
+            int capacity = Math.max(8, 2 * count);
+            black = Arrays.copyOf(black, capacity);
+            white = Arrays.copyOf(white, capacity);
+            players = Arrays.copyOf(players, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        black[count] = blackBits;
+        white[count] = whiteBits;
+        players[count] = (byte) player;
+        return count++;
+    }
+
+    /**
+     * Adds the given game state and returns its index in the batch
+     */
+    public int add(GameState s) {
+        return add(BitBoard.fromBoard(s.getBoard(), 1), BitBoard.fromBoard(s.getBoard(), 2), s.getPlayerInTurn());
+    }
+
+    /**
+     * Removes all positions, keeping the arrays
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getBlack(int i) {
+        return black[i];
+    }
+
+    public long getWhite(int i) {
+        return white[i];
+    }
+
+    /**
+     * Returns the player in turn in position i
+     */
+    public int getPlayer(int i) {
+        return players[i];
+    }
+
+    /**
+     * Returns the score of position i found by the last evaluation of the batch
+     */
+    public double getScore(int i) {
+        return scores[i];
+    }
+}
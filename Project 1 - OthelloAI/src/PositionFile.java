@@ -0,0 +1,232 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of positions in the compact encoding of GameState.encode(), e.g. for test
+ * suites, opening books and training data.
+ *
+ * The positions are fixed-size records after a small header, so the file is memory-mapped
+ * when read and a position is only turned into a GameState when asked for. Batches of
+ * positions can be read and written as a single ByteBuffer of records, without creating
+ * any objects per position. A file only holds positions of a single board size.
+ */
+public class PositionFile {
+
+    private static final int MAGIC = 0x4f544850; // "OTHP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;   // magic, version, board size, count
+
+    private final ByteBuffer records; // Read-only, little-endian like the encoded bitboards
+    private final int size;
+    private final int recordSize;
+    private final int count;
+
+    /**
+     * Maps the positions of the given file
+     * @throws IOException if the file couldn't be mapped or isn't a position file
+     */
+    public PositionFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is not a position file");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a position file");
+            }
+
+            size = buffer.getInt(8);
+            count = buffer.getInt(12);
+            if (size <= 0 || count < 0) {
+                throw new IOException(file + " has a corrupt header");
+            }
+            recordSize = GameState.encodedSize(size);
+            if (channel.size() < HEADER_SIZE + (long) count * recordSize) {
+                throw new IOException(file + " is truncated: expected " + count + " positions");
+            }
+
+            // The mapping stays valid after the channel is closed
+            buffer.position(HEADER_SIZE).limit(HEADER_SIZE + count * recordSize);
+            records = buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Returns the number of columns (and rows) of the positions
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of positions in the file
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes of every position, see GameState.encodedSize()
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns position i as a new game state
+     */
+    public GameState get(int i) {
+        ByteBuffer record = records.duplicate();
+        record.position(offset(i));
+        return GameState.decode(record, size);
+    }
+
+    /**
+     * Returns the player in turn in position i
+     */
+    public int getPlayer(int i) {
+        return records.get(offset(i) + recordSize - 1);
+    }
+
+    /**
+     * Returns the bitboard (see BitBoard) of the given player in position i, read
+     * directly from the file
+     */
+    public long getBits(int i, int player) {
+        if (!BitBoard.fits(size)) {
+            throw new IllegalStateException("Board size " + size + " cannot be represented as bitboards");
+        }
+        int bytes = (recordSize - 1) / 2;
+        int offset = offset(i) + (player - 1) * bytes;
+        if (bytes == 8) {
+            return records.getLong(offset);
+        }
+
+        long bits = 0;
+        for (int b = 0; b < bytes; b++) {
+            bits |= (records.get(offset + b) & 0xffL) << (8 * b);
+        }
+        return bits;
+    }
+
+    /**
+     * Returns all positions as consecutive records of getRecordSize() bytes. The buffer is
+     * a read-only view of the mapped file, so nothing is copied.
+     */
+    public ByteBuffer records() {
+        return records.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Position " + i + " of " + count);
+        }
+        return i * recordSize;
+    }
+
+    /**
+     * Returns the encoding of the given positions as consecutive records, ready to be written
+     * @throws IllegalArgumentException if the positions have different board sizes
+     */
+    public static ByteBuffer encode(List<GameState> positions) {
+        int size = positions.isEmpty() ? 8 : positions.get(0).getBoard().length;
+        ByteBuffer records = ByteBuffer.allocate(positions.size() * GameState.encodedSize(size));
+        for (GameState position : positions) {
+            if (position.getBoard().length != size) {
+                throw new IllegalArgumentException("Positions of board sizes " + size + " and "
+                        + position.getBoard().length + " cannot be stored in the same file");
+            }
+            position.encode(records);
+        }
+        return records.flip();
+    }
+
+    /**
+     * Writes the given positions to the file, replacing its content
+     */
+    public static void write(File file, List<GameState> positions) throws IOException {
+        int size = positions.isEmpty() ? 8 : positions.get(0).getBoard().length;
+        write(file, size, encode(positions));
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer, which should be consecutive records of
+     * positions of the given board size, to the file, replacing its content. The records
+     * are written straight from the buffer.
+     */
+    public static void write(File file, int size, ByteBuffer records) throws IOException {
+        int recordSize = GameState.encodedSize(size);
+        if (records.remaining() % recordSize != 0) {
+            throw new IllegalArgumentException("Buffer doesn't hold whole positions of board size " + size);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(records.remaining() / recordSize).flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = { header, records };
+            while (records.hasRemaining()) {
+                channel.write(buffers);
+            }
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+
+    /**
+     * Converts between position files and text files with a position per line in the
+     * notation of GameState.toString(). Files ending with .pos are position files.
+     * Valid arguments: input output
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java PositionFile positions.txt positions.pos");
+            System.err.println("       java PositionFile positions.pos positions.txt");
+            System.exit(1);
+        }
+
+        if (args[0].endsWith(".pos")) {
+            PositionFile positions = new PositionFile(new File(args[0]));
+            try (PrintWriter out = new PrintWriter(args[1])) {
+                for (int i = 0; i < positions.getCount(); i++) {
+                    out.println(positions.get(i));
+                }
+            }
+            System.out.println("Wrote " + positions.getCount() + " positions to " + args[1]);
+            return;
+        }
+
+        ArrayList<GameState> positions = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                // Anything after the board and the player in turn (e.g. a score) is ignored
+                String[] parts = line.split("\\s+");
+                try {
+                    positions.add(GameState.parse(parts[0] + " " + (parts.length > 1 ? parts[1] : "")));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed position: " + line, e);
+                }
+            }
+        }
+        write(new File(args[1]), positions);
+        System.out.println("Wrote " + positions.size() + " positions to " + args[1]);
+    }
+}
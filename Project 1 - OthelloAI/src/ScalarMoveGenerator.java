@@ -0,0 +1,42 @@
+/**
+ * Generates moves by shifting the bitboards one direction at a time. Used when the
+ * vectorized generator (see VectorMoveGenerator) isn't available.
+ */
+public class ScalarMoveGenerator implements IMoveGenerator {
+
+    @Override
+    public void directionalMoves(long own, long opponent, int size, long[] moves) {
+        long empty = ~(own | opponent) & BitBoard.all(size);
+        for (int d = 0; d < 2 * BitBoard.DIRECTIONS.length; d++) {
+            moves[d] = movesInDirection(own, opponent, empty, d, size);
+        }
+    }
+
+    @Override
+    public long legalMoves(long own, long opponent, int size) {
+        long empty = ~(own | opponent) & BitBoard.all(size);
+        long moves = 0;
+        for (int d = 0; d < 2 * BitBoard.DIRECTIONS.length; d++) {
+            moves |= movesInDirection(own, opponent, empty, d, size);
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the empty positions capturing in direction d, where directions 0-3 are
+     * BitBoard.DIRECTIONS and 4-7 are their opposites
+     */
+    private static long movesInDirection(long own, long opponent, long empty, int d, int size) {
+        int[][] directions = BitBoard.DIRECTIONS;
+        int sign = d < directions.length ? 1 : -1;
+        int deltaCol = sign * directions[d % directions.length][0];
+        int deltaRow = sign * directions[d % directions.length][1];
+
+        // Extend the runs of opponent tokens next to own tokens, which are at most size - 2 long
+        long run = BitBoard.shift(own, deltaCol, deltaRow, size) & opponent;
+        for (int i = 0; i < size - 3; i++) {
+            run |= BitBoard.shift(run, deltaCol, deltaRow, size) & opponent;
+        }
+        return BitBoard.shift(run, deltaCol, deltaRow, size) & empty;
+    }
+}
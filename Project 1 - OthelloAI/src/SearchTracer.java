@@ -0,0 +1,233 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Records the nodes visited by a search, for finding out why a move took long.
+ *
+ * Every child searched is recorded with its depth, the move leading to it, the window
+ * it was searched with, its result, whether it caused a cut-off, and the number of nodes
+ * in its subtree. The records are kept in a ring buffer of primitive arrays, so only
+ * the newest records are kept if the search visits more nodes than fit.
+ *
+ * Tracing is enabled with -Dothello.trace=true. All calls to the tracer should be guarded
+ * by "if (SearchTracer.ENABLED)", as the JIT then removes them when tracing is disabled.
+ * The records can be exported to a compact file, which can be summarised by running
+ *     java SearchTracer <trace file> [number of subtrees]
+ */
+public class SearchTracer {
+
+    public static final boolean ENABLED = Boolean.getBoolean("othello.trace");
+
+    // Number of records kept and the directory the traces are exported to
+    static final int CAPACITY = Integer.getInteger("othello.trace.size", 1 << 20);
+    static final String DIRECTORY = System.getProperty("othello.trace.dir", ".");
+
+    private static final int MAGIC = 0x4f545452; // "OTTR"
+    private static final int VERSION = 1;
+
+    private static final byte CUTOFF = 1;
+
+    private final short[] depths = new short[CAPACITY];
+    private final short[] moves = new short[CAPACITY];   // (col << 8) | row
+    private final float[] alphas = new float[CAPACITY];
+    private final float[] betas = new float[CAPACITY];
+    private final float[] results = new float[CAPACITY];
+    private final byte[] flags = new byte[CAPACITY];
+    private final int[] subtrees = new int[CAPACITY];
+
+    private long records;  // Total amount of records, including the overwritten ones
+    private long nodes;    // Total amount of nodes visited
+    private int exported;  // Amount of traces exported by finish()
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public void reset() {
+        records = 0;
+        nodes = 0;
+    }
+
+    /**
+     * Should be called whenever the search visits a node
+     */
+    public void countNode() {
+        nodes++;
+    }
+
+    /**
+     * Returns the amount of nodes visited so far. Used to find the size of
+     * a subtree, by comparing the count before and after searching it.
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Records a searched child
+     * @param depth The depth of the child
+     * @param move The move leading to the child
+     * @param alpha The lower bound of the window the child was searched with
+     * @param beta The upper bound of the window the child was searched with
+     * @param result The value returned by the search of the child
+     * @param cutoff Whether the result caused the remaining children to be skipped
+     * @param nodesBefore The value of nodes() before the child was searched
+     */
+    public void record(int depth, Position move, double alpha, double beta, double result,
+                       boolean cutoff, long nodesBefore) {
+        int i = (int) (records++ % CAPACITY);
+        depths[i] = (short) depth;
+        moves[i] = (short) ((move.col << 8) | move.row);
+        alphas[i] = (float) alpha;
+        betas[i] = (float) beta;
+        results[i] = (float) result;
+        flags[i] = cutoff ? CUTOFF : 0;
+        subtrees[i] = (int) Math.min(Integer.MAX_VALUE, nodes - nodesBefore);
+    }
+
+    /**
+     * Writes the records (oldest first) to a file in DIRECTORY and returns the file
+     * @param name The name of the file
+     */
+    public File export(String name) throws IOException {
+        File file = new File(DIRECTORY, name);
+        int count = (int) Math.min(records, CAPACITY);
+        int first = (int) ((records - count) % CAPACITY);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nodes);
+            out.writeLong(records);
+            out.writeInt(count);
+
+            for (int n = 0; n < count; n++) {
+                int i = (first + n) % CAPACITY;
+                out.writeShort(depths[i]);
+                out.writeShort(moves[i]);
+                out.writeFloat(alphas[i]);
+                out.writeFloat(betas[i]);
+                out.writeFloat(results[i]);
+                out.writeByte(flags[i]);
+                out.writeInt(subtrees[i]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Exports the records of the search that just finished to "trace-<name>-<n>.bin",
+     * where n counts the searches, and resets the tracer. Failures are only reported.
+     */
+    public void finish(String name) {
+        try {
+            File file = export("trace-" + name + "-" + (++exported) + ".bin");
+            System.err.println("Search trace written to " + file);
+        } catch (IOException e) {
+            System.err.println("Could not write search trace: " + e.getMessage());
+        }
+        reset();
+    }
+
+    /**
+     * Prints a summary of an exported trace: the amount of nodes and cut-offs per depth,
+     * and the biggest subtrees.
+     * Valid arguments: traceFile [number of subtrees]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java SearchTracer traceFile [subtrees]");
+            System.exit(1);
+        }
+        int shown = args.length >= 2 ? Integer.parseInt(args[1]) : 10;
+        if (shown < 0) {
+            System.err.println("The number of subtrees can't be negative");
+            System.exit(1);
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(args[0] + " is not a search trace");
+            }
+            long nodes = in.readLong();
+            long records = in.readLong();
+            int count = in.readInt();
+
+            System.out.println("Nodes visited: " + nodes + ", children recorded: " + records
+                    + (count < records ? " (only the last " + count + " are available)" : ""));
+
+            long[] perDepth = new long[0];
+            long[] cutoffsPerDepth = new long[0];
+
+            // Keeps the biggest subtrees seen, smallest first
+            PriorityQueue<Subtree> biggest = new PriorityQueue<>((a, b) -> Integer.compare(a.nodes, b.nodes));
+
+            for (int n = 0; n < count; n++) {
+                int depth = in.readShort();
+                int move = in.readShort();
+                float alpha = in.readFloat();
+                float beta = in.readFloat();
+                float result = in.readFloat();
+                boolean cutoff = (in.readByte() & CUTOFF) != 0;
+                int subtree = in.readInt();
+
+                if (depth >= perDepth.length) {
+                    perDepth = Arrays.copyOf(perDepth, depth + 1);
+                    cutoffsPerDepth = Arrays.copyOf(cutoffsPerDepth, depth + 1);
+                }
+                perDepth[depth]++;
+                if (cutoff) {
+                    cutoffsPerDepth[depth]++;
+                }
+
+                if (shown > 0 && (biggest.size() < shown || subtree > biggest.peek().nodes)) {
+                    biggest.add(new Subtree(subtree, "depth " + depth
+                            + ", move (" + (move >> 8) + ", " + (move & 0xff) + ")"
+                            + ", window [" + alpha + ", " + beta + "]"
+                            + ", result " + result + (cutoff ? ", cut-off" : "")));
+                    if (biggest.size() > shown) {
+                        biggest.poll();
+                    }
+                }
+            }
+
+            System.out.println();
+            System.out.println("Depth\tNodes\tCut-offs");
+            for (int depth = 0; depth < perDepth.length; depth++) {
+                System.out.println(depth + "\t" + perDepth[depth] + "\t" + cutoffsPerDepth[depth]);
+            }
+
+            if (shown > 0) {
+                ArrayList<Subtree> sorted = new ArrayList<>(biggest);
+                sorted.sort((a, b) -> Integer.compare(b.nodes, a.nodes));
+
+                System.out.println();
+                System.out.println("Biggest subtrees:");
+                for (Subtree subtree : sorted) {
+                    System.out.println(subtree.nodes + " nodes\t" + subtree.description);
+                }
+            }
+        }
+    }
+
+    /**
+     * A recorded child, used when summarising a trace
+     */
+    private static class Subtree {
+        final int nodes;
+        final String description;
+
+        Subtree(int nodes, String description) {
+            this.nodes = nodes;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Calculates the stable tokens of a position, i.e. the tokens that can never be
+ * captured for the rest of the game.
+ *
+ * A token is stable if it is protected on each of the four lines going through it
+ * (vertical, horizontal and the two diagonals). It is protected on a line if the
+ * line is completely filled, or if one of its neighbours on the line is outside
+ * the board or is a stable token of the same player. Starting from the corners the
+ * stable tokens are flood filled until nothing changes anymore.
+ */
+public class Stability {
+
+    private Stability() { }
+
+    /**
+     * Returns the bitboard of the stable tokens in own
+     * @param own The bitboard of the player whose stable tokens are wanted
+     * @param opponent The bitboard of the other player
+     * @param size The number of columns (and rows) of the board
+     */
+    public static long stableTokens(long own, long opponent, int size) {
+        long all = BitBoard.all(size);
+        long occupied = own | opponent;
+        int[][] directions = BitBoard.DIRECTIONS;
+
+        // The part of the protection on each line that doesn't depend on
+        // other stable tokens, i.e. full lines and the edges of the board
+        long[] protection = new long[directions.length];
+        for (int d = 0; d < directions.length; d++) {
+            int deltaCol = directions[d][0];
+            int deltaRow = directions[d][1];
+            long hasNeighbours = BitBoard.shift(all, deltaCol, deltaRow, size)
+                    & BitBoard.shift(all, -deltaCol, -deltaRow, size);
+
+            protection[d] = BitBoard.fullLines(occupied, d, size) | (all & ~hasNeighbours);
+        }
+
+        long stable = 0;
+        long previous;
+        do {
+            previous = stable;
+
+            long candidates = own;
+            for (int d = 0; d < directions.length && candidates != 0; d++) {
+                int deltaCol = directions[d][0];
+                int deltaRow = directions[d][1];
+                candidates &= protection[d]
+                        | BitBoard.shift(stable, deltaCol, deltaRow, size)
+                        | BitBoard.shift(stable, -deltaCol, -deltaRow, size);
+            }
+            stable = candidates;
+        } while (stable != previous);
+
+        return stable;
+    }
+
+    /**
+     * Counts the stable tokens of player 1 (black) and player 2 (white), respectively, and
+     * returns an array with the numbers in that order. Boards that cannot be represented
+     * as bitboards have no stable tokens.
+     */
+    public static int[] countStableTokens(GameState s) {
+        int[][] board = s.getBoard();
+        int size = board.length;
+        if (!BitBoard.fits(size)) {
+            return new int[]{ 0, 0 };
+        }
+
+        long black = BitBoard.fromBoard(board, 1);
+        long white = BitBoard.fromBoard(board, 2);
+        return new int[]{
+            Long.bitCount(stableTokens(black, white, size)),
+            Long.bitCount(stableTokens(white, black, size))
+        };
+    }
+}
@@ -0,0 +1,109 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Generates moves for all 8 directions at once, with a lane of a LongVector per
+ * direction, using the incubating Vector API. With 512-bit vectors (AVX-512) every
+ * step shifts all directions in a single instruction, with 256-bit vectors (AVX2)
+ * in two. Wider vectors than 8 longs aren't used, as the directions wouldn't fill them.
+ *
+ * This class is kept outside of src, as it needs the jdk.incubator.vector module
+ * to compile and run:
+ *     javac --add-modules jdk.incubator.vector -cp out -d out vector/VectorMoveGenerator.java
+ *     java --add-modules jdk.incubator.vector -cp out Othello ...
+ * BitBoard.MOVES uses it when it is found on the classpath and the module is added,
+ * and otherwise falls back to ScalarMoveGenerator.
+ */
+public class VectorMoveGenerator implements IMoveGenerator {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int DIRECTIONS = 8;
+
+    // For each board size and direction: the positions that stay on the board when
+    // moved in the direction, and the amount to shift left or right to move them.
+    // Lanes shifting right are set in rightward.
+    private final long[][] sources = new long[9][DIRECTIONS];
+    private final long[][] lefts = new long[9][DIRECTIONS];
+    private final long[][] rights = new long[9][DIRECTIONS];
+    private final boolean[][] rightward = new boolean[9][DIRECTIONS];
+
+    /**
+     * @throws UnsupportedOperationException if the CPU has less than 4 lanes of longs,
+     * in which case the scalar generator is faster, or more than 8, as the directions
+     * must fill a whole number of vectors
+     */
+    public VectorMoveGenerator() {
+        if (SPECIES.length() < 4) {
+            throw new UnsupportedOperationException("Vectors of " + SPECIES.length() + " longs are too small");
+        }
+        if (SPECIES.length() > DIRECTIONS) {
+            throw new UnsupportedOperationException("Vectors of " + SPECIES.length() + " longs are too wide");
+        }
+
+        int[][] directions = BitBoard.DIRECTIONS;
+        for (int size = 1; size <= 8; size++) {
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int sign = d < directions.length ? 1 : -1;
+                int deltaCol = sign * directions[d % directions.length][0];
+                int deltaRow = sign * directions[d % directions.length][1];
+
+                int delta = deltaCol * size + deltaRow;
+                sources[size][d] = BitBoard.shift(BitBoard.all(size), -deltaCol, -deltaRow, size);
+                lefts[size][d] = Math.max(delta, 0);
+                rights[size][d] = Math.max(-delta, 0);
+                rightward[size][d] = delta < 0;
+            }
+        }
+    }
+
+    @Override
+    public void directionalMoves(long own, long opponent, int size, long[] moves) {
+        long empty = ~(own | opponent) & BitBoard.all(size);
+
+        for (int i = 0; i < DIRECTIONS; i += SPECIES.length()) {
+            LongVector source = LongVector.fromArray(SPECIES, sources[size], i);
+            LongVector left = LongVector.fromArray(SPECIES, lefts[size], i);
+            LongVector right = LongVector.fromArray(SPECIES, rights[size], i);
+            VectorMask<Long> down = VectorMask.fromArray(SPECIES, rightward[size], i);
+            LongVector opponents = LongVector.broadcast(SPECIES, opponent);
+
+            LongVector run = shift(LongVector.broadcast(SPECIES, own), source, left, right, down).and(opponents);
+            for (int step = 0; step < size - 3; step++) {
+                run = run.or(shift(run, source, left, right, down).and(opponents));
+            }
+            shift(run, source, left, right, down).and(empty).intoArray(moves, i);
+        }
+    }
+
+    @Override
+    public long legalMoves(long own, long opponent, int size) {
+        long empty = ~(own | opponent) & BitBoard.all(size);
+
+        long moves = 0;
+        for (int i = 0; i < DIRECTIONS; i += SPECIES.length()) {
+            LongVector source = LongVector.fromArray(SPECIES, sources[size], i);
+            LongVector left = LongVector.fromArray(SPECIES, lefts[size], i);
+            LongVector right = LongVector.fromArray(SPECIES, rights[size], i);
+            VectorMask<Long> down = VectorMask.fromArray(SPECIES, rightward[size], i);
+            LongVector opponents = LongVector.broadcast(SPECIES, opponent);
+
+            LongVector run = shift(LongVector.broadcast(SPECIES, own), source, left, right, down).and(opponents);
+            for (int step = 0; step < size - 3; step++) {
+                run = run.or(shift(run, source, left, right, down).and(opponents));
+            }
+            moves |= shift(run, source, left, right, down).and(empty).reduceLanes(VectorOperators.OR);
+        }
+        return moves;
+    }
+
+    /**
+     * Moves the bits of every lane one step in the direction of the lane
+     */
+    private static LongVector shift(LongVector bits, LongVector source, LongVector left,
+                                    LongVector right, VectorMask<Long> down) {
+        LongVector kept = bits.and(source);
+        return kept.lanewise(VectorOperators.LSHL, left).blend(kept.lanewise(VectorOperators.LSHR, right), down);
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Implementation of IQueensLogic for large boards, which doesn't build a BDD.
+ *
+ * For every row the columns where a queen can still be placed are kept as a bitset.
+ * Placing a queen removes its column and diagonals from the other rows, which is
+ * all the propagation done. Whether a position can be part of a solution is then
+ * decided by searching for a solution with a queen on it: a backtracking search
+ * that always fills the row with the fewest free columns first.
+ *
+ * Every solution found is remembered as a witness: all of its positions are valid,
+ * so they don't need a search of their own. To cover as many positions as possible
+ * with few searches, the search tries positions that aren't witnessed yet first.
+ *
+ * Each search visits at most -Dqueens.budget=<nodes> nodes. A position whose search
+ * runs out of nodes is left as allowed, so a position is only marked invalid when it
+ * is proven that no solution uses it.
+ */
+public class BitsetLogic implements IQueensLogic {
+
+    private static final long BUDGET = Long.getLong("queens.budget", 100000);
+    private static final long FIRST_LIMIT = 256; // Nodes of the first attempt of a search
+
+    // Results of a search
+    private static final int FOUND = 1;
+    private static final int NONE = 0;
+    private static final int OUT_OF_NODES = -1;
+
+    private int size;		// Size of quadratic game board (i.e. size = #rows = #columns)
+    private int[][] board;	// Content of the board. Possible values: 0 (empty), 1 (queen), -1 (no queen allowed)
+    private int words;      // Amount of longs in a bitset of columns
+
+    private int[] inserted;          // The column of the inserted queen on every row, or -1
+    private ArrayDeque<int[]> order; // The inserted queens, last on top
+
+    private int[] queens;            // The column of the queen on every row during a search, or -1
+    private long[][][] available;    // [depth][row] the columns still free on every row
+    private boolean[][] witnessed;   // [column][row] whether the position is part of a found solution
+    private long nodes;              // Nodes visited by the current attempt of a search
+    private long nodeLimit;          // Nodes the current attempt may visit
+    private Random random = new Random(0);
+
+    @Override
+    public void initializeBoard(int size) {
+        this.size = size;
+        words = (size + 63) / 64;
+
+        inserted = new int[size];
+        Arrays.fill(inserted, -1);
+        order = new ArrayDeque<>();
+
+        queens = new int[size];
+        available = new long[size + 1][size][words];
+
+        updateBoard();
+    }
+
+    @Override
+    public int[][] getBoard() {
+        return board;
+    }
+
+    @Override
+    public void insertQueen(int column, int row) {
+        // Only empty positions can get a queen
+        if (board[column][row] != 0) {
+            return;
+        }
+
+        inserted[row] = column;
+        order.push(new int[] {column, row});
+        updateBoard();
+    }
+
+    @Override
+    public boolean undo() {
+        if (order.isEmpty()) {
+            return false;
+        }
+
+        inserted[order.pop()[1]] = -1;
+        updateBoard();
+        return true;
+    }
+
+    /**
+     * Recomputes the board from the inserted queens
+     */
+    private void updateBoard() {
+        board = new int[size][size];
+        witnessed = new boolean[size][size];
+
+        // The free columns of every row, given the inserted queens (depth 0)
+        long[][] base = available[0];
+        boolean consistent = true;
+        for (int row = 0; row < size; row++) {
+            for (int word = 0; word < words; word++) {
+                int bits = Math.min(64, size - word * 64);
+                base[row][word] = bits == 64 ? -1L : (1L << bits) - 1;
+            }
+        }
+        System.arraycopy(inserted, 0, queens, 0, size);
+        for (int row = 0; row < size; row++) {
+            if (inserted[row] >= 0) {
+                board[inserted[row]][row] = 1;
+                consistent &= place(base, base, inserted[row], row);
+            }
+        }
+
+        // First look for any solution, as it witnesses a position on every row
+        if (consistent) {
+            consistent = findSolution(-1, -1) != NONE;
+        }
+
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                if (board[column][row] == 1) {
+                    continue;
+                }
+
+                if (!consistent || !isSet(base[row], column)) {
+                    // The position is attacked by a queen
+                    board[column][row] = -1;
+                } else if (!witnessed[column][row]) {
+                    // Look for a solution with a queen on the position
+                    if (findSolution(column, row) == NONE) {
+                        board[column][row] = -1;
+                    }
+                }
+            }
+        }
+
+        QueensBoard.markForcedQueens(board);
+    }
+
+    /**
+     * Searches for a solution extending the inserted queens and, if row isn't -1,
+     * a queen at the given position. The free columns given the inserted queens
+     * must be in available[0].
+     *
+     * A search that takes long has usually made a bad choice early on, so it is
+     * restarted with another random order and twice the nodes, until the budget
+     * is used up. A search that ends without running out of nodes has looked at
+     * every possibility, so NONE is only returned when there is no solution.
+     */
+    private int findSolution(int column, int row) {
+        long used = 0;
+        long limit = FIRST_LIMIT;
+        while (true) {
+            nodeLimit = Math.min(limit, BUDGET - used);
+            nodes = 0;
+            System.arraycopy(inserted, 0, queens, 0, size);
+
+            int result;
+            if (row < 0) {
+                result = searchFrom(0);
+            } else {
+                queens[row] = column;
+                result = place(available[0], available[1], column, row) ? searchFrom(1) : NONE;
+            }
+
+            used += nodes;
+            if (result != OUT_OF_NODES || used >= BUDGET) {
+                return result;
+            }
+            limit *= 2;
+        }
+    }
+
+    /**
+     * Searches for a solution extending the queens placed so far, whose
+     * free columns are in available[depth]
+     */
+    private int searchFrom(int depth) {
+        if (++nodes > nodeLimit) {
+            return OUT_OF_NODES;
+        }
+        long[][] free = available[depth];
+
+        // Fill the row with the fewest free columns first. Ties, and the
+        // order the columns are tried in, are decided from a random start.
+        int bestRow = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int startRow = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int row = (startRow + i) % size;
+            if (queens[row] < 0) {
+                int count = count(free[row]);
+                if (count < bestCount) {
+                    bestRow = row;
+                    bestCount = count;
+                }
+            }
+        }
+
+        if (bestRow < 0) {
+            // Every row has a queen, so this is a solution
+            for (int row = 0; row < size; row++) {
+                witnessed[queens[row]][row] = true;
+            }
+            return FOUND;
+        }
+        if (bestCount == 0) {
+            return NONE;
+        }
+
+        // Try the positions that aren't witnessed yet first
+        int startColumn = random.nextInt(size);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                int column = (startColumn + i) % size;
+                if (!isSet(free[bestRow], column) || witnessed[column][bestRow] != (pass == 1)) {
+                    continue;
+                }
+
+                queens[bestRow] = column;
+                if (place(free, available[depth + 1], column, bestRow)) {
+                    int result = searchFrom(depth + 1);
+                    if (result != NONE) {
+                        return result;
+                    }
+                }
+                queens[bestRow] = -1;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Writes the free columns after placing a queen at the given position into to.
+     * Returns false if this leaves a row without a queen with no free columns.
+     */
+    private boolean place(long[][] from, long[][] to, int column, int row) {
+        boolean consistent = true;
+
+        for (int r = 0; r < size; r++) {
+            long[] bits = to[r];
+            if (from != to) {
+                System.arraycopy(from[r], 0, bits, 0, words);
+            }
+
+            if (r == row) {
+                Arrays.fill(bits, 0);
+                continue;
+            }
+
+            // The column and both diagonals of the queen
+            int distance = r - row;
+            clear(bits, column);
+            clear(bits, column + distance);
+            clear(bits, column - distance);
+
+            if (queens[r] < 0 && count(bits) == 0) {
+                consistent = false;
+            }
+        }
+        return consistent;
+    }
+
+    private boolean isSet(long[] bits, int column) {
+        return (bits[column >>> 6] & (1L << column)) != 0;
+    }
+
+    private void clear(long[] bits, int column) {
+        if (0 <= column && column < size) {
+            bits[column >>> 6] &= ~(1L << column);
+        }
+    }
+
+    private int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -30,4 +30,12 @@ public interface IQueensLogic {
 	 * that is afterwards the board specifies where there _must_ be queens and where there _cannot_ be queens.  
 	 */
 	public void insertQueen(int column, int row);
+
+	/**
+	 * Removes the queen inserted last, returning the board to how it was before it was inserted.
+	 * Returns false if there is nothing to undo, or if the logic doesn't support undoing.
+	 */
+	public default boolean undo() {
+		return false;
+	}
 }
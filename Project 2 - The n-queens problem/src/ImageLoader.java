@@ -0,0 +1,72 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Finds and decodes the images of the GUI. Images are decoded in the background, in
+ * parallel, so the window can be shown before they are ready.
+ *
+ * An image imgs/name is looked for on the classpath first (e.g. when packaged in a
+ * jar), then in the working directory, and then next to the directory the classes
+ * were loaded from or its parent, so the game can be started from any directory.
+ */
+public class ImageLoader {
+
+    private static final String DIRECTORY = "imgs";
+
+    /**
+     * Returns where the given image is, or throws an IOException if it can't be found
+     */
+    public static URL find(String name) throws IOException {
+        URL resource = ImageLoader.class.getResource("/" + DIRECTORY + "/" + name);
+        if (resource != null) {
+            return resource;
+        }
+
+        File file = new File(DIRECTORY, name);
+        if (file.isFile()) {
+            return file.toURI().toURL();
+        }
+
+        // Otherwise look next to the classes, if their location is known
+        try {
+            CodeSource source = ImageLoader.class.getProtectionDomain().getCodeSource();
+            if (source != null && source.getLocation() != null) {
+                File classes = new File(source.getLocation().toURI());
+                for (File dir : new File[] {classes, classes.getParentFile()}) {
+                    file = new File(new File(dir, DIRECTORY), name);
+                    if (dir != null && file.isFile()) {
+                        return file.toURI().toURL();
+                    }
+                }
+            }
+        } catch (URISyntaxException | SecurityException e) {
+            // The location of the classes can't be read, so there is nowhere else to look
+        }
+        throw new IOException("Image " + DIRECTORY + "/" + name + " not found on the classpath, in "
+                + System.getProperty("user.dir") + " or next to the classes");
+    }
+
+    /**
+     * Starts decoding the image at the given location in the background
+     */
+    public static CompletableFuture<BufferedImage> load(URL location) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                BufferedImage image = ImageIO.read(location);
+                if (image == null) {
+                    throw new IOException("Unsupported image format: " + location);
+                }
+                return image;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
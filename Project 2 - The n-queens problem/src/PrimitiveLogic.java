@@ -1,3 +1,5 @@
+import java.util.ArrayDeque;
+
 /**
  * This class implements a basic logic for the n-queens problem to get you started. 
  * Actually, when inserting a queen, it only puts the queen where requested
@@ -10,10 +12,12 @@
 public class PrimitiveLogic implements IQueensLogic{
     private int size;		// Size of quadratic game board (i.e. size = #rows = #columns)
     private int[][] board;	// Content of the board. Possible values: 0 (empty), 1 (queen), -1 (no queen allowed)
+    private ArrayDeque<int[]> inserted = new ArrayDeque<>(); // Positions of the inserted queens, last on top
     
     public void initializeBoard(int size) {
         this.size = size;
         this.board = new int[size][size];
+        inserted.clear();
     }
    
     public int[][] getBoard() {
@@ -21,6 +25,18 @@ public class PrimitiveLogic implements IQueensLogic{
     }
 
     public void insertQueen(int column, int row) {
-        board[column][row] = 1;
+        if (board[column][row] == 0) {
+            board[column][row] = 1;
+            inserted.push(new int[] {column, row});
+        }
+    }
+
+    public boolean undo() {
+        if (inserted.isEmpty()) {
+            return false;
+        }
+        int[] position = inserted.pop();
+        board[position[0]][position[1]] = 0;
+        return true;
     }
 }
@@ -1,3 +1,6 @@
+import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 
@@ -70,16 +73,22 @@ public class Queens {
 		try {
 			// Setup of the frame containing the game
 			QueensGUI g = new QueensGUI(logic);
+
+			// Shrink the squares so the board fits on the screen, scrolling if it can't shrink enough
+			Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+			g.setTileSize(QueensGUI.fitTileSize(size, new Dimension(screen.width - 50, screen.height - 50)));
+
 			JFrame f = new JFrame();
-			f.setSize(200 + size*100, 200 + size*100);
 			f.setTitle("n-queens Puzzle");
 			f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-			f.getContentPane().add(g);
+			f.getContentPane().add(new JScrollPane(g));
+			f.pack();
+			f.setSize(Math.min(f.getWidth(), screen.width), Math.min(f.getHeight(), screen.height));
 			f.setVisible(true);
 		}
 	    catch (IOException e){
-	      	errMsg = "Images not found at " + System.getProperty("user.dir") + "\\imgs";
-	       	err = true;
+	      	System.err.println(e.getMessage());
+	       	System.exit(1);
 	    }
 	}
 	
@@ -90,6 +99,8 @@ public class Queens {
     	System.err.println(errMsg);
     	System.err.println("Usage: java QueensLogic [size]");
     	System.err.println("\tQueensLogic\t\t- specifies a class implementing IQueensLogic");
+    	System.err.println("\t\t\t\t  (QueensLogic uses a BDD, BitsetLogic searches and also handles large boards)");
+    	System.err.println("\t\t\t\t  (ZDDQueensLogic uses a ZDD, SATQueensLogic a SAT solver for very large boards)");
     	System.err.println("\tsize\t\t - Must be an integer greater or equal to 5. Defaults to 8.");
     }
     
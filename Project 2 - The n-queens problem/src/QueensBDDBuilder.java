@@ -0,0 +1,331 @@
+import net.sf.javabdd.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the BDD describing all solutions to the n-queens problem.
+ *
+ * The rules are split into blocks: "exactly one queen" for every row and column, and
+ * "at most one queen" for every diagonal. Each block only has a linear number of nodes,
+ * and the order in which the blocks are conjoined (the strategy) decides how big the
+ * intermediate BDDs get. The variable order decides which variable is used for each
+ * position of the board.
+ */
+public class QueensBDDBuilder {
+
+    /**
+     * The order in which the positions of the board are given variables
+     */
+    public enum VariableOrder {
+        ROW_MAJOR,      // Row by row, left to right
+        COLUMN_MAJOR,   // Column by column, top to bottom
+        CENTER_OUT,     // Row by row, starting with the middle rows
+        DIAGONAL        // Anti-diagonal by anti-diagonal, starting in the top left corner
+    }
+
+    /**
+     * The order in which the rules are conjoined
+     */
+    public enum Strategy {
+        PER_CELL,       // One rule per position, conjoined in row-major order (the original construction)
+        SEQUENTIAL,     // The blocks one by one, rows first, then columns and diagonals
+        BALANCED,       // The blocks pairwise, as a balanced tree
+        CLUSTERED       // The blocks one by one, those of the last variables first
+    }
+
+    private final BDDFactory fact;
+    private final int size;
+    private final VariableOrder order;
+    private final int[][] variables; // The variable of every position, indexed [column][row]
+
+    private int peakNodes; // Highest number of allocated nodes (including garbage not yet collected)
+
+    /**
+     * Creates a builder for the given board size using the given factory, which
+     * should have (at least) size*size variables.
+     */
+    public QueensBDDBuilder(BDDFactory fact, int size, VariableOrder order) {
+        this.fact = fact;
+        this.size = size;
+        this.order = order;
+        this.variables = createVariables(size, order);
+    }
+
+    /**
+     * Returns the variable of every position, indexed [column][row]
+     */
+    public int[][] getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the groups of positions that are given consecutive variables by the
+     * variable order (rows, columns or anti-diagonals), each as the first and last
+     * variable of the group. Used for keeping the groups together when reordering.
+     */
+    public List<int[]> getVariableGroups() {
+        List<int[]> groups = new ArrayList<>();
+        int first = 0;
+        for (int groupSize : groupSizes()) {
+            groups.add(new int[] {first, first + groupSize - 1});
+            first += groupSize;
+        }
+        return groups;
+    }
+
+    private int[] groupSizes() {
+        int[] sizes;
+        if (order == VariableOrder.DIAGONAL) {
+            // The anti-diagonals grow from 1 to size positions and back again
+            sizes = new int[2 * size - 1];
+            for (int diagonal = 0; diagonal < sizes.length; diagonal++) {
+                sizes[diagonal] = size - Math.abs(size - 1 - diagonal);
+            }
+        } else {
+            sizes = new int[size];
+            Arrays.fill(sizes, size);
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the highest number of allocated nodes during the last build
+     */
+    public int getPeakNodes() {
+        return peakNodes;
+    }
+
+    /**
+     * Builds the BDD of all solutions using the given strategy
+     */
+    public BDD build(Strategy strategy) {
+        peakNodes = fact.getNodeNum();
+
+        if (strategy == Strategy.PER_CELL) {
+            return buildPerCell();
+        }
+
+        List<Block> blocks = createBlocks();
+        if (strategy == Strategy.CLUSTERED) {
+            blocks.sort(Comparator.comparingInt((Block block) -> block.topLevel).reversed());
+        }
+
+        List<BDD> rules = new ArrayList<>();
+        for (Block block : blocks) {
+            rules.add(block.bdd);
+        }
+
+        if (strategy == Strategy.BALANCED) {
+            return conjoinBalanced(rules);
+        }
+
+        BDD result = fact.one();
+        for (BDD rule : rules) {
+            result.andWith(rule);
+            updatePeak();
+        }
+        return result;
+    }
+
+    /**
+     * Conjoins the rules pairwise until only one is left
+     */
+    private BDD conjoinBalanced(List<BDD> rules) {
+        if (rules.isEmpty()) {
+            return fact.one();
+        }
+
+        while (rules.size() > 1) {
+            List<BDD> next = new ArrayList<>();
+            for (int i = 0; i + 1 < rules.size(); i += 2) {
+                next.add(rules.get(i).andWith(rules.get(i + 1)));
+                updatePeak();
+            }
+            if (rules.size() % 2 == 1) {
+                next.add(rules.get(rules.size() - 1));
+            }
+            rules = next;
+        }
+        return rules.get(0);
+    }
+
+    /**
+     * Creates the blocks for all rows, columns and diagonals
+     */
+    private List<Block> createBlocks() {
+        List<Block> blocks = new ArrayList<>();
+
+        // There must be exactly one queen on every row and every column
+        for (int row = 0; row < size; row++) {
+            List<Integer> line = new ArrayList<>();
+            for (int column = 0; column < size; column++) {
+                line.add(variables[column][row]);
+            }
+            blocks.add(createBlock(line, true));
+        }
+        for (int column = 0; column < size; column++) {
+            List<Integer> line = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                line.add(variables[column][row]);
+            }
+            blocks.add(createBlock(line, true));
+        }
+
+        // There can be at most one queen on every diagonal (with more than one position)
+        for (int diagonal = -(size - 2); diagonal <= size - 2; diagonal++) {
+            List<Integer> down = new ArrayList<>();
+            List<Integer> up = new ArrayList<>();
+            for (int column = 0; column < size; column++) {
+                int row = column - diagonal;
+                if (0 <= row && row < size) {
+                    down.add(variables[column][row]);
+                    up.add(variables[column][size - 1 - row]);
+                }
+            }
+            blocks.add(createBlock(down, false));
+            blocks.add(createBlock(up, false));
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Creates the block stating that exactly one (or at most one) of the given variables is true
+     */
+    private Block createBlock(List<Integer> line, boolean exactlyOne) {
+        // Going through the variables from the top of the BDD keeps it small
+        line.sort(Comparator.comparingInt(fact::var2Level));
+
+        // none: no variable seen so far is true, one: exactly one is
+        BDD none = fact.one();
+        BDD one = fact.zero();
+        for (int variable : line) {
+            BDD x = fact.ithVar(variable);
+            BDD notX = fact.nithVar(variable);
+
+            BDD nextOne = one.and(notX).orWith(none.and(x));
+            one.free();
+            one = nextOne;
+            none.andWith(notX);
+            x.free();
+        }
+
+        BDD bdd;
+        if (exactlyOne) {
+            none.free();
+            bdd = one;
+        } else {
+            bdd = one.orWith(none);
+        }
+        return new Block(bdd, fact.var2Level(line.get(0)));
+    }
+
+    /**
+     * Builds the BDD with one rule per position, stating that if there is a queen
+     * at the position there cannot be a queen on its row, column or diagonals, and
+     * lastly that there must be a queen on every row.
+     */
+    private BDD buildPerCell() {
+        BDD result = fact.one();
+
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                BDD n = fact.one();
+
+                // All other positions on the row, column and diagonals
+                for (int c = 0; c < size; c++) {
+                    for (int r = 0; r < size; r++) {
+                        boolean attacked = (c == column) != (r == row)
+                                || (c != column && Math.abs(c - column) == Math.abs(r - row));
+                        if (attacked) {
+                            n.andWith(fact.nithVar(variables[c][r]));
+                        }
+                    }
+                }
+
+                // If given position is true, then none of the others can be
+                BDD subBDD = fact.nithVar(variables[column][row]).orWith(n);
+                result.andWith(subBDD);
+                updatePeak();
+            }
+        }
+
+        // There must be a queen on every row
+        for (int row = 0; row < size; row++) {
+            BDD subBDD = fact.zero();
+            for (int column = 0; column < size; column++) {
+                subBDD.orWith(fact.ithVar(variables[column][row]));
+            }
+            result.andWith(subBDD);
+            updatePeak();
+        }
+
+        return result;
+    }
+
+    private void updatePeak() {
+        peakNodes = Math.max(peakNodes, fact.getNodeNum());
+    }
+
+    /**
+     * Returns the variable of every position for the given order
+     */
+    static int[][] createVariables(int size, VariableOrder order) {
+        int[][] variables = new int[size][size];
+        int next = 0;
+
+        switch (order) {
+            case COLUMN_MAJOR:
+                for (int column = 0; column < size; column++) {
+                    for (int row = 0; row < size; row++) {
+                        variables[column][row] = next++;
+                    }
+                }
+                break;
+            case CENTER_OUT:
+                for (int i = 0; i < size; i++) {
+                    // The middle row, then alternating above and below it
+                    int offset = (i + 1) / 2;
+                    int row = (size - 1) / 2 + (i % 2 == 1 ? offset : -offset);
+                    for (int column = 0; column < size; column++) {
+                        variables[column][row] = next++;
+                    }
+                }
+                break;
+            case DIAGONAL:
+                for (int diagonal = 0; diagonal <= 2 * (size - 1); diagonal++) {
+                    for (int column = 0; column < size; column++) {
+                        int row = diagonal - column;
+                        if (0 <= row && row < size) {
+                            variables[column][row] = next++;
+                        }
+                    }
+                }
+                break;
+            default:
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < size; column++) {
+                        variables[column][row] = next++;
+                    }
+                }
+        }
+
+        return variables;
+    }
+
+    /**
+     * A rule on a row, column or diagonal, along with the level of its top variable
+     */
+    private static class Block {
+        final BDD bdd;
+        final int topLevel;
+
+        Block(BDD bdd, int topLevel) {
+            this.bdd = bdd;
+            this.topLevel = topLevel;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+import net.sf.javabdd.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Stores the finished n-queens BDDs in a directory, so they only have to be built once
+ * per board size and variable order.
+ *
+ * Every file starts with a header line holding the board size, the variable order, and
+ * the number of nodes and solutions of the BDD, and a line with the order of the
+ * factory's levels when it was saved (which differs from the variable order if the
+ * variables were reordered while building), followed by the BDD as written by the
+ * factory's save(). The levels are put back in that order before the BDD is loaded.
+ * When a BDD is loaded it is checked against the header, and files that can't be
+ * read or don't match are ignored, so the BDD is built again.
+ */
+public class QueensBDDStore {
+
+    private static final String MAGIC = "queens-bdd";
+    private static final int VERSION = 2;
+
+    private final File directory;
+
+    public QueensBDDStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the file holding the BDD for the given board size and variable order
+     */
+    public File getFile(int size, QueensBDDBuilder.VariableOrder order) {
+        return new File(directory, "queens-" + size + "-" + order.name().toLowerCase() + ".bdd");
+    }
+
+    /**
+     * Loads the BDD for the given board size and variable order into the given factory,
+     * which must have exactly size*size variables and no variable blocks, and sets the
+     * factory's levels to the order they had when the BDD was saved.
+     * Returns null, leaving the levels as they were, if it hasn't been stored or the
+     * stored file isn't valid.
+     */
+    public BDD load(BDDFactory fact, int size, QueensBDDBuilder.VariableOrder order) {
+        File file = getFile(size, order);
+        if (!file.exists()) {
+            return null;
+        }
+
+        int[] previousOrder = varOrder(fact);
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String[] header = String.valueOf(in.readLine()).split(" ");
+            if (header.length != 6 || !header[0].equals(MAGIC) || Integer.parseInt(header[1]) != VERSION
+                    || Integer.parseInt(header[2]) != size || !header[3].equals(order.name())) {
+                throw new IOException("unexpected header");
+            }
+            int nodes = Integer.parseInt(header[4]);
+            long solutions = Long.parseLong(header[5]);
+
+            fact.setVarOrder(parseVarOrder(in.readLine(), fact.varNum()));
+            BDD bdd = fact.load(in);
+            if (bdd.nodeCount() != nodes || (long) bdd.satCount() != solutions) {
+                bdd.free();
+                throw new IOException("the BDD doesn't match its header");
+            }
+            return bdd;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring stored BDD " + file + ": " + e.getMessage());
+            fact.setVarOrder(previousOrder);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the variable of every level of the factory, as taken by setVarOrder()
+     */
+    private static int[] varOrder(BDDFactory fact) {
+        int[] order = new int[fact.varNum()];
+        for (int level = 0; level < order.length; level++) {
+            order[level] = fact.level2Var(level);
+        }
+        return order;
+    }
+
+    /**
+     * Returns the order of the levels on the given line, which must hold every
+     * variable of the factory exactly once
+     */
+    private static int[] parseVarOrder(String line, int varNum) throws IOException {
+        String[] variables = String.valueOf(line).trim().split(" ");
+        if (variables.length != varNum) {
+            throw new IOException("expected the order of " + varNum + " variables");
+        }
+
+        int[] order = new int[varNum];
+        boolean[] seen = new boolean[varNum];
+        for (int level = 0; level < varNum; level++) {
+            order[level] = Integer.parseInt(variables[level]);
+            if (order[level] < 0 || order[level] >= varNum || seen[order[level]]) {
+                throw new IOException("the variable order isn't a permutation");
+            }
+            seen[order[level]] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Stores the BDD for the given board size and variable order. The file is
+     * written next to its final name first, so a failed write never leaves a
+     * partial file behind. Failures are only reported.
+     */
+    public void save(BDDFactory fact, BDD bdd, int size, QueensBDDBuilder.VariableOrder order) {
+        File file = getFile(size, order);
+        File temporary = new File(directory, file.getName() + ".tmp");
+
+        try {
+            directory.mkdirs();
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(temporary))) {
+                out.write(MAGIC + " " + VERSION + " " + size + " " + order.name()
+                        + " " + bdd.nodeCount() + " " + (long) bdd.satCount() + "\n");
+                for (int variable : varOrder(fact)) {
+                    out.write(variable + " ");
+                }
+                out.write("\n");
+                fact.save(out, bdd);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not store BDD in " + file + ": " + e.getMessage());
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Checks that a BDD whose variables were reordered while it was built is used when
+     * it is loaded again: builds the BDD for the given board size with the given reorder
+     * method (win2ite by default), stores it in the directory, and loads it into a new
+     * factory. Exits with 1 if it isn't loaded or doesn't match the built BDD.
+     * Valid arguments: directory size [reorder method]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java QueensBDDStore directory size [reorder method]");
+            System.exit(1);
+        }
+        QueensBDDStore store = new QueensBDDStore(new File(args[0]));
+        int size = Integer.parseInt(args[1]);
+        BDDFactory.ReorderMethod method = QueensLogic.parseReorderMethod(args.length >= 3 ? args[2] : "win2ite");
+        if (method == null) {
+            System.err.println("A reorder method is needed for the check");
+            System.exit(1);
+        }
+        QueensBDDBuilder.VariableOrder order = QueensBDDBuilder.VariableOrder.ROW_MAJOR;
+
+        // Build with a small node table, so the factory is reordered while building, and
+        // once more afterwards in case it wasn't
+        BDDFactory built = JFactory.init(10000, 1000);
+        built.setVarNum(size * size);
+        built.varBlockAll();
+        built.autoReorder(method);
+        BDD bdd = new QueensBDDBuilder(built, size, order).build(QueensBDDBuilder.Strategy.SEQUENTIAL);
+        built.reorder(method);
+        built.disableReorder();
+        store.save(built, bdd, size, order);
+
+        boolean reordered = false;
+        for (int level = 0; level < size * size; level++) {
+            reordered |= built.level2Var(level) != level;
+        }
+
+        BDDFactory loaded = JFactory.init(10000, 1000);
+        loaded.setVarNum(size * size);
+        BDD copy = store.load(loaded, size, order);
+        if (copy == null || copy.nodeCount() != bdd.nodeCount() || copy.satCount() != bdd.satCount()
+                || !Arrays.equals(varOrder(loaded), varOrder(built))) {
+            System.err.println("The stored BDD for " + size + "x" + size + " wasn't loaded as it was built");
+            System.exit(1);
+        }
+        System.out.println("Loaded the BDD for " + size + "x" + size + " from " + store.getFile(size, order)
+                + ": " + copy.nodeCount() + " nodes, " + (long) copy.satCount() + " solutions, "
+                + (reordered ? "with" : "without") + " reordered variables");
+    }
+}
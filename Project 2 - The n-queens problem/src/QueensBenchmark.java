@@ -0,0 +1,213 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures an IQueensLogic without opening a window: for every board size in a range
+ * it initializes the board, replays a sequence of clicks and reports the time used to
+ * initialize, percentiles of the time used per click, the peak heap usage and, for
+ * QueensLogic, the size of its BDD.
+ *
+ * The clicks are either random (on positions that are still empty, until the board is
+ * full) or read from a script with a line "column row" per click or "undo" to undo
+ * the last queen. Every size is run once as a warm-up for the JIT before it is measured.
+ *
+ * Valid arguments: Logic minSize [maxSize] [runs] [script]
+ */
+public class QueensBenchmark {
+
+    private static final String UNDO = "undo";
+
+    private final String logicClass;
+    private final List<int[]> script; // null for random clicks, {-1, -1} for undo
+    private final Random random = new Random(0);
+    private final PrintStream out; // Where the results are printed
+
+    private IQueensLogic logic; // The logic of the last run
+
+    public QueensBenchmark(String logicClass, List<int[]> script, PrintStream out) {
+        this.logicClass = logicClass;
+        this.script = script;
+        this.out = out;
+    }
+
+    /**
+     * Runs the benchmark for the given size the given number of times and prints the results
+     */
+    public void run(int size, int runs) throws ReflectiveOperationException {
+        // Warm up, so the measured runs use compiled code
+        runOnce(size, new ArrayList<Long>());
+
+        List<Long> clickTimes = new ArrayList<>();
+        long initTime = 0;
+        resetPeakHeap();
+        for (int run = 0; run < runs; run++) {
+            initTime += runOnce(size, clickTimes);
+        }
+
+        long[] times = new long[clickTimes.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = clickTimes.get(i);
+        }
+        Arrays.sort(times);
+
+        StringBuilder result = new StringBuilder();
+        result.append(size).append('\t').append(millis(initTime / runs)).append(" ms");
+        result.append('\t').append(times.length).append(" clicks");
+        result.append("\tp50 ").append(millis(percentile(times, 50)));
+        result.append("\tp90 ").append(millis(percentile(times, 90)));
+        result.append("\tp99 ").append(millis(percentile(times, 99)));
+        result.append("\tmax ").append(millis(percentile(times, 100))).append(" ms");
+        result.append("\theap ").append(peakHeap() / (1024 * 1024)).append(" MB");
+        if (logic instanceof QueensLogic) {
+            QueensMetrics metrics = ((QueensLogic) logic).getMetrics();
+            result.append("\tBDD ").append(metrics.getRootNodes()).append(" nodes (peak ")
+                    .append(metrics.getPeakNodes()).append(")");
+        } else if (logic instanceof ZDDQueensLogic) {
+            ZDDQueensLogic zddLogic = (ZDDQueensLogic) logic;
+            result.append("\tZDD ").append(zddLogic.getRootNodes()).append(" nodes (peak ")
+                    .append(zddLogic.getZDD().getPeakNodes()).append(")");
+        }
+        out.println(result);
+    }
+
+    /**
+     * Initializes a new logic and replays the clicks, adding the time used by every click
+     * (in ns) to clickTimes. Returns the time used to initialize the board (in ns).
+     */
+    private long runOnce(int size, List<Long> clickTimes) throws ReflectiveOperationException {
+        logic = Queens.parseLogicParam(logicClass);
+
+        long start = System.nanoTime();
+        logic.initializeBoard(size);
+        long initTime = System.nanoTime() - start;
+
+        if (script != null) {
+            for (int[] click : script) {
+                start = System.nanoTime();
+                if (click[0] < 0) {
+                    logic.undo();
+                } else if (click[0] < size && click[1] < size) {
+                    logic.insertQueen(click[0], click[1]);
+                }
+                clickTimes.add(System.nanoTime() - start);
+            }
+            return initTime;
+        }
+
+        // Click random empty positions until there are none
+        while (true) {
+            List<Integer> empty = new ArrayList<>();
+            int[][] board = logic.getBoard();
+            for (int column = 0; column < size; column++) {
+                for (int row = 0; row < size; row++) {
+                    if (board[column][row] == 0) {
+                        empty.add(column * size + row);
+                    }
+                }
+            }
+            if (empty.isEmpty()) {
+                return initTime;
+            }
+
+            int position = empty.get(random.nextInt(empty.size()));
+            start = System.nanoTime();
+            logic.insertQueen(position / size, position % size);
+            clickTimes.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the given percentile of the sorted times, or 0 if there are none
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the peak usages of the heap memory pools since the last reset
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Reads a script of clicks, with a line "column row" per click or "undo"
+     */
+    static List<int[]> readScript(String file) throws IOException {
+        List<int[]> script = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.equals(UNDO)) {
+                    script.add(new int[] {-1, -1});
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2) {
+                    throw new IOException("Invalid click in " + file + ": " + line);
+                }
+                script.add(new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+            }
+        }
+        return script;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java QueensBenchmark Logic minSize [maxSize] [runs] [script]");
+            System.exit(1);
+        }
+
+        int minSize = Integer.parseInt(args[1]);
+        int maxSize = args.length >= 3 ? Integer.parseInt(args[2]) : minSize;
+        int runs = args.length >= 4 ? Integer.parseInt(args[3]) : 5;
+        List<int[]> script = args.length >= 5 ? readScript(args[4]) : null;
+
+        // Anything the logic prints goes to stderr, so stdout only holds the results
+        PrintStream out = System.out;
+        System.setOut(System.err);
+
+        QueensBenchmark benchmark = new QueensBenchmark(args[0], script, out);
+        out.println("Size\tInit\tClicks\tTime per click\tPeak heap");
+        for (int size = minSize; size <= maxSize; size++) {
+            benchmark.run(size, runs);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Helper methods for the boards returned by IQueensLogic.getBoard(), where each entry
+ * [c][r] is 1 (queen), -1 (no queen allowed) or 0 (allowed).
+ */
+public class QueensBoard {
+
+    private QueensBoard() { }
+
+    /**
+     * Places a queen on every row and column with a single position that isn't -1,
+     * as every solution must have a queen there
+     */
+    public static void markForcedQueens(int[][] board) {
+        int size = board.length;
+        for (int row = 0; row < size; row++) {
+            int allowed = 0, last = -1;
+            for (int column = 0; column < size; column++) {
+                if (board[column][row] != -1) {
+                    allowed++;
+                    last = column;
+                }
+            }
+            if (allowed == 1) {
+                board[last][row] = 1;
+            }
+        }
+
+        for (int column = 0; column < size; column++) {
+            int allowed = 0, last = -1;
+            for (int row = 0; row < size; row++) {
+                if (board[column][row] != -1) {
+                    allowed++;
+                    last = row;
+                }
+            }
+            if (allowed == 1) {
+                board[column][last] = 1;
+            }
+        }
+    }
+}
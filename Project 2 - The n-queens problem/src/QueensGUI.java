@@ -1,9 +1,10 @@
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.Consumer;
 
 /**
  * GUI to show the n-queens problem, listening for input from the user, and interact with the interactive
@@ -17,94 +18,265 @@ import java.io.IOException;
 public class QueensGUI extends JComponent implements MouseListener
 {
 	final static long 	serialVersionUID = 1234567890;
-	final int 			imgSize = 100; // Size of images to draw board
+	final static int 	imgSize = 100; // Size of images to draw board
+	final static int 	MIN_TILE_SIZE = 8; // Smallest size a square can be drawn at
 	
 	private IQueensLogic logic; // The logic that keeps track of what is legal or not	
+	private int 		tileSize = imgSize; // Size a square is drawn at
 	
-	// Images for drawing the board
+	// Images for drawing the board, which are null until they have been loaded
 	private Image 		part, queen, invalid, backgroundW, backgroundB;
 	private Image 		border_left,border_right,border_top,border_bottom;
 	private Image 		corner_left_top, corner_left_bottom,corner_right_top,corner_right_bottom;
-	
-	public QueensGUI(IQueensLogic logic)  throws IOException {
+	private Image[][]	tiles; // [(c+r)%2][value+1] a square with its background, content and grid
 
+	// The images scaled to every tile size used so far, by tile size and original image
+	private HashMap<Integer, HashMap<Image, Image>> scaledImages = new HashMap<>();
 
-		part = ImageIO.read(new File("imgs/maze.png"));
-		queen = ImageIO.read(new File("imgs/queen.png"));
-		invalid = ImageIO.read(new File("imgs/invalid.png"));
-		backgroundW = ImageIO.read(new File("imgs/backgroundWhite.png"));
-        backgroundB = ImageIO.read(new File("imgs/backgroundBlack.png"));
-		border_left = ImageIO.read(new File("imgs/board_left.png"));
-		border_right = ImageIO.read(new File("imgs/board_right.png"));
-		border_top = ImageIO.read(new File("imgs/board_top.png"));
-		border_bottom = ImageIO.read(new File("imgs/board_bottom.png"));
-		corner_left_top = ImageIO.read(new File("imgs/corner_top_left.png"));
-		corner_left_bottom = ImageIO.read(new File("imgs/corner_bottom_left.png"));
-		corner_right_top = ImageIO.read(new File("imgs/corner_top_right.png"));
-		corner_right_bottom = ImageIO.read(new File("imgs/corner_bottom_right.png"));
+	// The values of the squares when they were last painted, used to repaint only those that changed
+	private int[][] 	drawn;
+	
+	/*
+	 * Creates the GUI, which can be shown right away: the images are decoded in the background
+	 * and drawn as they arrive. Throws an IOException if an image can't be found.
+	 */
+	public QueensGUI(IQueensLogic logic)  throws IOException {
+		load("maze.png", image -> part = image);
+		load("queen.png", image -> queen = image);
+		load("invalid.png", image -> invalid = image);
+		load("backgroundWhite.png", image -> backgroundW = image);
+		load("backgroundBlack.png", image -> backgroundB = image);
+		load("board_left.png", image -> border_left = image);
+		load("board_right.png", image -> border_right = image);
+		load("board_top.png", image -> border_top = image);
+		load("board_bottom.png", image -> border_bottom = image);
+		load("corner_top_left.png", image -> corner_left_top = image);
+		load("corner_bottom_left.png", image -> corner_left_bottom = image);
+		load("corner_top_right.png", image -> corner_right_top = image);
+		load("corner_bottom_right.png", image -> corner_right_bottom = image);
 		
 		this.logic = logic;
 		this.addMouseListener(this);
+		this.setDoubleBuffered(true);
 
+		// Zoom with + and -
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('+'), "zoomIn");
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('-'), "zoomOut");
+		getActionMap().put("zoomIn", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) { setTileSize(tileSize * 5 / 4 + 1); }
+		});
+		getActionMap().put("zoomOut", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) { setTileSize(tileSize * 4 / 5); }
+		});
 	}
 
 	/*
-	 * Draws the current game board.
+	 * Starts decoding the given image, which is stored with the setter and drawn on the
+	 * event dispatch thread when it is ready. The squares are drawn once all of their
+	 * images are ready.
 	 */
-	public void paint(Graphics g){
-		this.setDoubleBuffered(true);
-		Insets in = getInsets();               
-		g.translate(in.left, in.top);            
+	private void load(String name, Consumer<Image> setter) throws IOException {
+		ImageLoader.load(ImageLoader.find(name)).whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+			if ( error != null ) {
+				System.err.println("Could not load " + name + ": " + error.getCause());
+				return;
+			}
+			setter.accept(image);
+
+			if ( tiles == null && part != null && queen != null && invalid != null && backgroundW != null && backgroundB != null ) {
+				tiles = new Image[2][3];
+				for (int value = -1; value <= 1; value++) {
+					tiles[0][value+1] = createTile(backgroundW, value); // white squares
+					tiles[1][value+1] = createTile(backgroundB, value); // black squares
+				}
+			}
+			repaint();
+		}));
+	}
+
+	/*
+	 * Returns the image of a square with the given background and value
+	 */
+	private Image createTile(Image background, int value) {
+		BufferedImage tile = new BufferedImage(imgSize, imgSize, BufferedImage.TYPE_INT_ARGB);
+		Graphics g = tile.getGraphics();
+		g.drawImage(background, 0, 0, this);
+		if ( value == 1 ) // queen stands on square
+			g.drawImage(queen, 0, 0, this);
+		if ( value == -1 ) // no queen allowed
+			g.drawImage(invalid, 0, 0, this);
+		g.drawImage(part, 0, 0, this);
+		g.dispose();
+		return tile;
+	}
+
+	/*
+	 * Returns the largest tile size (at most the size of the images) at which a board
+	 * of the given size, with its borders, fits in the given area
+	 */
+	static int fitTileSize(int size, Dimension area) {
+		int fit = Math.min(area.width, area.height) / (size + 2);
+		return Math.max(MIN_TILE_SIZE, Math.min(imgSize, fit));
+	}
+
+	/*
+	 * Sets the size the squares are drawn at, between MIN_TILE_SIZE and the size of the images
+	 */
+	public void setTileSize(int size) {
+		tileSize = Math.max(MIN_TILE_SIZE, Math.min(imgSize, size));
+		revalidate();
+		repaint();
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
 
+	@Override
+	public Dimension getPreferredSize() {
+		Insets in = getInsets();
+		int side = (logic.getBoard().length + 2) * tileSize;
+		return new Dimension(in.left + in.right + side, in.top + in.bottom + side);
+	}
+
+	/*
+	 * Returns the given image scaled to the current tile size. Scaled images are kept,
+	 * so every image is only scaled once for every tile size.
+	 */
+	private Image scaled(Image image) {
+		if ( tileSize == imgSize )
+			return image;
+		return scaledImages.computeIfAbsent(tileSize, size -> new HashMap<>())
+				.computeIfAbsent(image, original -> scale(original, tileSize));
+	}
+
+	/*
+	 * Scales a square image to the given size. Shrinking is done in steps of at most
+	 * half the size, as bilinear filtering skips pixels when shrinking more at once.
+	 */
+	private static Image scale(Image image, int size) {
+		Image scaled = image;
+		int current = scaled.getWidth(null);
+		do {
+			current = Math.max(current / 2, size);
+			BufferedImage next = new BufferedImage(current, current, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = next.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(scaled, 0, 0, current, current, null);
+			g.dispose();
+			scaled = next;
+		} while ( current > size );
+		return scaled;
+	}
+
+	/*
+	 * Returns the image at the given position, where positions 0 and size+1 are the borders,
+	 * or null if it hasn't been loaded yet
+	 */
+	private Image imageAt(int x, int y, int[][] gameboard) {
+		int last = gameboard.length + 1;
+		if ( x == 0 )
+			return y == 0 ? corner_left_top : y == last ? corner_left_bottom : border_left;
+		if ( x == last )
+			return y == 0 ? corner_right_top : y == last ? corner_right_bottom : border_right;
+		if ( y == 0 )
+			return border_top;
+		if ( y == last )
+			return border_bottom;
+
+		int c = x - 1, r = y - 1;
+		return tiles == null ? null : tiles[(c+r)%2][gameboard[c][r]+1];
+	}
+
+	/*
+	 * Repaints the squares whose value changed since they were last painted
+	 */
+	private void refresh() {
 		int[][] gameboard = logic.getBoard();
-		int cols = gameboard.length;
-		int rows = cols;
-		
-        // draw borders
-        for (int i = 0; i < cols; i++) {
-            g.drawImage(border_left, 0, imgSize+imgSize*i, this);
-            g.drawImage(border_right, imgSize + gameboard.length*imgSize, imgSize + imgSize*i, this); 
-            g.drawImage(border_top, imgSize+imgSize*i, 0, this);
-            g.drawImage(border_bottom, imgSize+imgSize*i, imgSize + gameboard.length*imgSize, this);
-        }
-		// draw corners
-		g.drawImage(corner_left_top, 0, 0, this);
-		g.drawImage(corner_left_bottom, 0, imgSize + rows*imgSize, this);
-		g.drawImage(corner_right_top, imgSize + imgSize*cols, 0, this);
-		g.drawImage(corner_right_bottom, imgSize + imgSize*cols, imgSize + rows*imgSize, this);
-
-        // draw board
-		for (int c = 0; c < cols; c++){
-			for (int r = 0; r < rows; r++){
-				int player = gameboard[c][r];
-                
-                if ( (c+r)%2 == 0 ) // white squares
-                	g.drawImage(backgroundW, imgSize+imgSize*c, imgSize+imgSize*r, this);
-                else // black squares
-                	g.drawImage(backgroundB, imgSize+imgSize*c, imgSize+imgSize*r, this);
-                
-                if ( player == 1 ) // queen stands on square
-					g.drawImage(queen, imgSize+imgSize*c, imgSize+imgSize*r, this);
-				if (player == -1) // no queen allowed
-					g.drawImage(invalid, imgSize+imgSize*c, imgSize+imgSize*r, this);
-				
-                g.drawImage(part, imgSize+imgSize*c, imgSize+imgSize*r, this);
+		if ( drawn == null || drawn.length != gameboard.length ) {
+			drawn = copyOf(gameboard);
+			revalidate();
+			repaint();
+			return;
+		}
+
+		Insets in = getInsets();
+		Rectangle changed = null;
+		for (int c = 0; c < gameboard.length; c++){
+			for (int r = 0; r < gameboard.length; r++){
+				if ( gameboard[c][r] == drawn[c][r] )
+					continue;
+				drawn[c][r] = gameboard[c][r];
+
+				Rectangle square = new Rectangle(in.left+tileSize+tileSize*c, in.top+tileSize+tileSize*r, tileSize, tileSize);
+				changed = changed == null ? square : changed.union(square);
 			}
-		}    
+		}
+		if ( changed != null )
+			repaint(changed);
+	}
+
+	private static int[][] copyOf(int[][] gameboard) {
+		int[][] copy = new int[gameboard.length][];
+		for (int c = 0; c < gameboard.length; c++)
+			copy[c] = gameboard[c].clone();
+		return copy;
+	}
+
+	/*
+	 * Draws the current game board. Only the squares and borders inside the area that
+	 * needs to be painted (e.g. the visible part in a scroll pane) are drawn.
+	 */
+	public void paint(Graphics g){
+		int[][] gameboard = logic.getBoard();
+		if ( drawn == null )
+			drawn = copyOf(gameboard);
+
+		Insets in = getInsets();
+		Rectangle clip = g.getClipBounds();
+		if ( clip == null )
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+		int last = gameboard.length + 1;
+		int firstX = Math.max(0, Math.floorDiv(clip.x - in.left, tileSize));
+		int lastX = Math.min(last, Math.floorDiv(clip.x + clip.width - 1 - in.left, tileSize));
+		int firstY = Math.max(0, Math.floorDiv(clip.y - in.top, tileSize));
+		int lastY = Math.min(last, Math.floorDiv(clip.y + clip.height - 1 - in.top, tileSize));
+
+		for (int x = firstX; x <= lastX; x++){
+			for (int y = firstY; y <= lastY; y++){
+				Image image = imageAt(x, y, gameboard);
+				if ( image != null )
+					g.drawImage(scaled(image), in.left + x*tileSize, in.top + y*tileSize, this);
+			}
+		}
  	}
 
 	/*
 	 * When the user clicks on one of the board squares, the corresponding
-	 * column and row is parsed to the logic. 
+	 * column and row is parsed to the logic. A right click undoes the last queen,
+	 * and a click with shift held completes the board to a random solution (QueensLogic only).
 	 */
 	public void mouseClicked(MouseEvent e){
-        int col = e.getX()/100 - 1;
-        int row = e.getY()/100 - 1;
+		if (SwingUtilities.isRightMouseButton(e)) {
+			if (logic.undo())
+				refresh();
+			return;
+		}
+		if (e.isShiftDown() && logic instanceof QueensLogic) {
+			((QueensLogic) logic).completeRandomly();
+			refresh();
+			return;
+		}
+
+		Insets in = getInsets();
+        int col = Math.floorDiv(e.getX() - in.left, tileSize) - 1;
+        int row = Math.floorDiv(e.getY() - in.top, tileSize) - 1;
 
         int size = logic.getBoard().length;
 		if ((col >= 0) && (col < size) && (row >= 0) && (row < size)) 
 			logic.insertQueen(col, row);
-		repaint();
+		refresh();
 	}
 
 	// Not used methods from the interface of MouseListener 
@@ -113,4 +285,3 @@ public class QueensGUI extends JComponent implements MouseListener
 	public void mousePressed(MouseEvent e){}
 	public void mouseReleased(MouseEvent e){}
 }
-
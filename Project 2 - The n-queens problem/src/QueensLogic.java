@@ -1,14 +1,56 @@
 import net.sf.javabdd.*;
 
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
 public class QueensLogic implements IQueensLogic {
 
     private int size;		// Size of quadratic game board (i.e. size = #rows = #columns)
     private int[][] board;	// Content of the board. Possible values: 0 (empty), 1 (queen), -1 (no queen allowed)
 
     private BDDFactory fact;
-    private BDD True;
-    private BDD False;
     private BDD rootBDD;
+    private QueensMetrics metrics;
+    private int[][] variables; // The variable of every position, indexed [column][row]
+
+    // The steps that can be undone, last inserted queen on top
+    private ArrayDeque<Step> history = new ArrayDeque<>();
+
+    // The variables of the inserted queens, which the rootBDD has been restricted on
+    private boolean[] restricted;
+
+    // The number of solutions below every node of the rootBDD (by node number),
+    // counting only the variables below the node. Cleared when the root changes.
+    private HashMap<Integer, Double> solutionCounts = new HashMap<>();
+    private Random random = new Random();
+
+    private static final QueensBDDBuilder.VariableOrder VARIABLE_ORDER = parseOption("queens.order",
+            QueensBDDBuilder.VariableOrder.class, QueensBDDBuilder.VariableOrder.ROW_MAJOR);
+    private static final QueensBDDBuilder.Strategy STRATEGY = parseOption("queens.strategy",
+            QueensBDDBuilder.Strategy.class, QueensBDDBuilder.Strategy.SEQUENTIAL);
+
+    private static final BDDFactory.ReorderMethod REORDER_METHOD =
+            parseReorderMethod(System.getProperty("queens.reorder"));
+
+    // Directory in which finished BDDs are stored across sessions, given by
+    // -Dqueens.bdd.dir=<directory>. The BDD is always built if it isn't set.
+    private static final QueensBDDStore STORE = System.getProperty("queens.bdd.dir") == null
+            ? null
+            : new QueensBDDStore(new File(System.getProperty("queens.bdd.dir")));
+
+    // Bounds of the initial node table. The number of nodes needed grows
+    // about 4 times with every extra row, see nodeTableSize()
+    private static final int MIN_NODES = 10000;
+    private static final int MAX_NODES = 1 << 23;
+    private static final int CACHE_RATIO = 8; // Nodes per entry in the operation cache
+
+    // Amount of steps that can be undone, given by -Dqueens.history=<steps>
+    private static final int MAX_HISTORY = Integer.getInteger("queens.history", 1000);
 
 
     @Override
@@ -16,8 +58,11 @@ public class QueensLogic implements IQueensLogic {
         this.size = size;
         board = new int[size][size];
 
+        clearHistory();
+        restricted = new boolean[size*size];
+        solutionCounts.clear();
         InitializeBDD();
-        updateInvalidPositions();
+        updateInvalidPositions(new ArrayList<Integer>());
     }
 
     @Override
@@ -39,208 +84,476 @@ public class QueensLogic implements IQueensLogic {
         board[column][row] = 1;
 
         // Updates the rootBDD by the new restriction of the new placed
-        // queen
-        rootBDD = rootBDD.restrict(getVariable(column, row));
-
-        // Updates the board
-        updateInvalidPositions();
+        // queen. The previous root is kept for undoing the move.
+        BDD previous = rootBDD;
+        BDD queen = getVariable(column, row);
+        rootBDD = rootBDD.restrict(queen);
+        queen.free();
+        restricted[variables[column][row]] = true;
+        solutionCounts.clear();
+
+        // Updates the board, remembering which positions changed
+        ArrayList<Integer> changed = new ArrayList<>();
+        changed.add(column * size + row);
+        updateInvalidPositions(changed);
+
+        history.push(new Step(previous, changed));
+        if (history.size() > MAX_HISTORY) {
+            history.removeLast().root.free();
+        }
     }
 
-    /**
-     * Method that initialize the process of building the BDD
-     */
-    private void InitializeBDD() {
+    @Override
+    public boolean undo() {
+        if (history.isEmpty()) {
+            return false;
+        }
 
-        // Initialize the fields
-        fact = JFactory.init(2000000,200000);
-        True = fact.one();
-        False = fact.zero();
-        rootBDD = True;
+        // Every position changed by the step was empty before it
+        Step step = history.pop();
+        for (int position : step.changed) {
+            board[position / size][position % size] = 0;
+        }
 
-        // The amount of variables are the amount of
-        // position on the board
-        int nVars = size*size;
+        // The first position changed is the queen that was inserted
+        int queen = step.changed[0];
+        restricted[variables[queen / size][queen % size]] = false;
 
-        // Initialize the variable number in the BDD factory
-        fact.setVarNum(nVars);
+        rootBDD.free();
+        rootBDD = step.root;
+        solutionCounts.clear();
+        return true;
+    }
 
-        // Build the BDD by creating the rules for all
-        // variables/positions
-        createRules();
+    /**
+     * Returns the number of solutions with the queens placed so far
+     */
+    public double countSolutions() {
+        return countBelow(rootBDD) * freeAssignments(0, levelOf(rootBDD));
     }
 
     /**
-     * Method that creates the rules in the BDD in the correct order
+     * Returns a random solution with the queens placed so far, where every solution
+     * is equally likely, or null if there is none. The solution is given as
+     * [column][row] with 1 where there is a queen and 0 elsewhere.
      */
-    private void createRules() {
-        // Create rule for the individual position, affects columns,
-        // rows and diagonal, since that is how Queens behave
-        for (int column = 0; column < board.length; column++) {
-            for (int row = 0; row < board[column].length; row++) {
-                createRuleForQueensPosition(column, row);
+    public int[][] sampleSolution() {
+        if (rootBDD.isZero()) {
+            return null;
+        }
+
+        // Every variable is true in the solution if the path sets it to true,
+        // or if it is one of the restricted variables
+        int nVars = size*size;
+        boolean[] values = restricted.clone();
+        BDD node = rootBDD.id();
+        int level = 0;
+        while (!node.isOne()) {
+            // Variables skipped by the path can take any value
+            for (; level < node.level(); level++) {
+                int variable = fact.level2Var(level);
+                if (!restricted[variable]) {
+                    values[variable] = random.nextBoolean();
+                }
+            }
+
+            // Go to a child with a probability proportional to its number of solutions
+            BDD low = node.low();
+            BDD high = node.high();
+            double lowCount = countBelow(low) * freeAssignments(level + 1, levelOf(low));
+            double highCount = countBelow(high) * freeAssignments(level + 1, levelOf(high));
+            boolean takeHigh = random.nextDouble() * (lowCount + highCount) < highCount;
+
+            values[node.var()] = takeHigh;
+            node.free();
+            if (takeHigh) {
+                node = high;
+                low.free();
+            } else {
+                node = low;
+                high.free();
+            }
+            level++;
+        }
+        for (; level < nVars; level++) {
+            int variable = fact.level2Var(level);
+            if (!restricted[variable]) {
+                values[variable] = random.nextBoolean();
             }
         }
+        node.free();
 
-        // Create rule that ensure that there can be a queen on
-        // every row
-        createQueenOnEveryColumnRule();
+        int[][] solution = new int[size][size];
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                solution[column][row] = values[variables[column][row]] ? 1 : 0;
+            }
+        }
+        return solution;
     }
 
     /**
-     * Method that for every given position on given column and row,
-     * create the rules connected to that position
+     * Places queens to complete the board to a random solution, one insertQueen
+     * at a time, so each of them can be undone
      */
-    private void createRuleForQueensPosition(int column, int row) {
-        BDD n = True;
-        BDD subBDD = False;
-
+    public void completeRandomly() {
+        int[][] solution = sampleSolution();
+        if (solution == null) {
+            return;
+        }
 
-        // All column cells on rows position should be added
-        // left --> right
-        for (int c = 0; c < size; c++) {
-            if(column != c) {
-                // It should be 'and', since if one queen is placed, the
-                // whole row should return true (true that it is invalid)
-                n = n.and(getNotVariable(c, row));
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                if (solution[column][row] == 1 && board[column][row] == 0) {
+                    insertQueen(column, row);
+                }
             }
         }
+    }
 
-        // All row cells on columns position should be added
-        // top --> bottom
-        for (int r = 0; r < size; r++) {
-            if(row != r) {
-                n = n.and(getNotVariable(column, r));
-            }
+    /**
+     * Returns the number of assignments to the variables below the given node
+     * that satisfy it, counting each node only once per root
+     */
+    private double countBelow(BDD node) {
+        if (node.isZero()) {
+            return 0;
+        }
+        if (node.isOne()) {
+            return 1;
         }
 
+        // In the JFactory the hash code of a BDD is its node number
+        Double known = solutionCounts.get(node.hashCode());
+        if (known != null) {
+            return known;
+        }
 
-        int c = column; int r = row;
+        int level = node.level();
+        BDD low = node.low();
+        BDD high = node.high();
+        double count = countBelow(low) * freeAssignments(level + 1, levelOf(low))
+                + countBelow(high) * freeAssignments(level + 1, levelOf(high));
+        low.free();
+        high.free();
 
-        // Diagonal top left --> bottom right
-        while (r < size && c < size) {
+        solutionCounts.put(node.hashCode(), count);
+        return count;
+    }
 
-            if(c != column && r != row) {
-                n = n.and(getNotVariable(c, r));
+    /**
+     * Returns the number of assignments to the variables on the levels from (including)
+     * to (excluding), which are skipped by an edge. Restricted variables are fixed.
+     */
+    private double freeAssignments(int from, int to) {
+        double assignments = 1;
+        for (int level = from; level < to; level++) {
+            if (!restricted[fact.level2Var(level)]) {
+                assignments *= 2;
             }
+        }
+        return assignments;
+    }
 
-            c++; r++;
+    /**
+     * Forgets all steps that could be undone, releasing their BDDs
+     */
+    private void clearHistory() {
+        while (!history.isEmpty()) {
+            history.pop().root.free();
         }
+    }
+
+    /**
+     * Method that initialize the process of building the BDD
+     */
+    private void InitializeBDD() {
 
-        int c2 = column; int r2 = row;
+        // Initialize the fields. The sizes of the node table and cache can be
+        // changed with -Dqueens.nodes=<nodes> and -Dqueens.cache=<entries>
+        int nodes = Integer.getInteger("queens.nodes", nodeTableSize(size));
+        int cache = Integer.getInteger("queens.cache", Math.max(nodes / CACHE_RATIO, 1000));
+        fact = JFactory.init(nodes, cache);
 
-        // Diagonal bottom left --> top right
-        while (r2 >= 0 && c2 < size) {
+        // Grow by doubling rather than in small steps, keeping the cache in proportion
+        fact.setMaxIncrease(nodes);
+        fact.setCacheRatio((double) nodes / cache);
+        metrics = new QueensMetrics(fact);
 
-            if(c2 != column && r2 != row) {
-                n = n.and(getNotVariable(c2, r2));
+        // The amount of variables are the amount of
+        // position on the board
+        int nVars = size*size;
+
+        // Initialize the variable number in the BDD factory
+        fact.setVarNum(nVars);
+
+        // Build the BDD from the rules of all rows, columns and diagonals.
+        // The variable order and construction strategy can be changed with
+        // -Dqueens.order=<order> and -Dqueens.strategy=<strategy>
+        QueensBDDBuilder builder = new QueensBDDBuilder(fact, size, VARIABLE_ORDER);
+        variables = builder.getVariables();
+
+        // Use the BDD built in an earlier session if there is one, in the order
+        // its variables were saved in. This is done before adding the variable
+        // blocks below, as the factory can't set the order of blocked variables.
+        long start = System.nanoTime();
+        if (STORE != null) {
+            rootBDD = STORE.load(fact, size, VARIABLE_ORDER);
+            if (rootBDD != null) {
+                long loadTime = (System.nanoTime() - start) / 1000000;
+                metrics.recordBuild(loadTime, fact.getNodeNum(), rootBDD.nodeCount());
+
+                System.out.println("BDD for " + size + "x" + size + " loaded from "
+                        + STORE.getFile(size, VARIABLE_ORDER) + " in " + metrics);
+                return;
             }
+        }
 
-            c2++; r2--;
+        // The variables can be reordered automatically while building with
+        // -Dqueens.reorder=<method>, keeping the rows, columns or diagonals given
+        // consecutive variables together unless -Dqueens.reorder.blocks=false
+        if (REORDER_METHOD != null) {
+            if (!"false".equals(System.getProperty("queens.reorder.blocks"))) {
+                for (int[] group : builder.getVariableGroups()) {
+                    fact.addVarBlock(group[0], group[1], false);
+                }
+            } else {
+                // The JFactory only moves variables that are in a block
+                fact.varBlockAll();
+            }
         }
 
-        // Since subBDD initially is false, then the negated position
-        // at given column and row decide if it is true
-        subBDD = subBDD.or(getNotVariable(column, row));
+        // Reordering is only enabled while building, as reordering while
+        // queens are placed would make the clicks slow
+        if (REORDER_METHOD != null) {
+            fact.autoReorder(REORDER_METHOD);
+        }
+        try {
+            rootBDD = builder.build(STRATEGY);
+        } finally {
+            if (REORDER_METHOD != null) {
+                fact.disableReorder();
+            }
+        }
+        long buildTime = (System.nanoTime() - start) / 1000000;
+        metrics.recordBuild(buildTime, builder.getPeakNodes(), rootBDD.nodeCount());
 
-        // If given position is true, then all positions in the given rules
-        // is true
-        subBDD = subBDD.or(n);
+        System.out.println("BDD for " + size + "x" + size + " using " + VARIABLE_ORDER
+                + " order and " + STRATEGY + " strategy built in " + metrics);
 
-        // Link it together with all other rules
-        rootBDD = rootBDD.and(subBDD);
+        if (STORE != null) {
+            STORE.save(fact, rootBDD, size, VARIABLE_ORDER);
+        }
     }
 
     /**
-     * Method that creates the rule that ensures a queen
-     * must be able to be placed at every row
+     * Returns the initial size of the node table for the given board size,
+     * enough to build the BDD with only a few garbage collections
      */
-    private void createQueenOnEveryColumnRule() {
-
-        // There must be a queen on every row, this rule checks
-        // that for given position, if there can't be a queen on
-        // every row, the position is invalid
-        for (int row = 0; row < size; row++) {
-            BDD subBDD = False;
+    static int nodeTableSize(int size) {
+        long nodes = 1000L << (2 * Math.max(size - 4, 0));
+        return (int) Math.max(MIN_NODES, Math.min(nodes, MAX_NODES));
+    }
 
-            for (int column = 0; column < size; column++) {
-                subBDD = subBDD.or(getVariable(column, row));
-            }
+    /**
+     * Returns the value of the given system property as a constant of the enum, or the
+     * default if it isn't set. An unknown value is reported along with the valid ones,
+     * and the default is used instead.
+     */
+    static <E extends Enum<E>> E parseOption(String property, Class<E> type, E defaultValue) {
+        String name = System.getProperty(property);
+        if (name == null) {
+            return defaultValue;
+        }
 
-            //sub_bdd must be true
-            rootBDD = rootBDD.and(subBDD);
+        try {
+            return Enum.valueOf(type, name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown value " + name + " of " + property + ", using " + defaultValue
+                    + " (valid values: " + Arrays.toString(type.getEnumConstants()) + ")");
+            return defaultValue;
         }
     }
 
     /**
-     *  Get variable in BDD factory on given position
+     * Returns the reorder method with the given name (win2, win2ite, win3 or win3ite),
+     * or null if no name is given or it is "none". An unknown name is reported along
+     * with the valid ones, and null is returned so the variables aren't reordered.
+     * Sifting and random reordering fail inside the bundled JFactory (with a
+     * NullPointerException and an ArrayIndexOutOfBoundsException) as soon as they
+     * run, so they are treated as unknown here.
      */
-    private BDD getVariable(int column, int row) {
-        return fact.ithVar(row * size + column);
+    static BDDFactory.ReorderMethod parseReorderMethod(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        switch (name.toLowerCase()) {
+            case "none": return null;
+            case "win2": return BDDFactory.REORDER_WIN2;
+            case "win2ite": return BDDFactory.REORDER_WIN2ITE;
+            case "win3": return BDDFactory.REORDER_WIN3;
+            case "win3ite": return BDDFactory.REORDER_WIN3ITE;
+            default:
+                System.err.println("Unknown value " + name + " of queens.reorder, using none"
+                        + " (valid values: none, win2, win2ite, win3, win3ite)");
+                return null;
+        }
     }
 
     /**
-     *  Get negation of variable in BDD factory on given position
+     * Returns the metrics of the BDD of the current board
      */
-    private BDD getNotVariable(int column, int row) {
-        return fact.nithVar(row * size + column);
+    public QueensMetrics getMetrics() {
+        return metrics;
     }
 
     /**
-     * Helper method that checks whether the given position is
-     * invalid
+     *  Get variable in BDD factory on given position
      */
-    private boolean isPositionInvalid(int column, int row) {
-        // Creates a new BDD restricted to given position
-        BDD positionBDD = rootBDD.restrict(getVariable(column, row));
-
-        // If position is invalid, return true
-        return positionBDD.isZero();
+    private BDD getVariable(int column, int row) {
+        return fact.ithVar(variables[column][row]);
     }
 
     /**
      * Method that updates invalid positions every time a queen
-     * is placed
+     * is placed, adding the positions it changes (column * size + row)
+     * to the given list
      */
-    private void updateInvalidPositions() {
+    private void updateInvalidPositions(ArrayList<Integer> changed) {
 
-        // Counter to help determine the remaining valid positions
-        int invalidCellsCounter = 0;
+        // Find the values every variable can still take in a single
+        // traversal of the BDD, instead of restricting it on each position.
+        // This is done on the calling thread: the traversal is linear in the
+        // size of the BDD (about 10 ms on 11x11), while copying the BDD into
+        // a factory per thread would cost more than the traversal itself.
+        int nVars = size*size;
+        boolean[] canBeTrue = new boolean[nVars];
+        boolean[] canBeFalse = new boolean[nVars];
+        findPossibleValues(canBeTrue, canBeFalse);
 
+        // Only empty positions can change status
         for (int column = 0; column < board.length; column++) {
             for (int row = 0; row < board[column].length; row++) {
-                if (isPositionInvalid(column, row)) {
+                if (board[column][row] != 0) {
+                    continue;
+                }
+
+                int variable = variables[column][row];
+                if (!canBeTrue[variable]) {
 
                     // If position is invalid, mark it in the board
                     board[column][row] = -1;
+                    changed.add(column * size + row);
+                } else if (!canBeFalse[variable]) {
 
-                    invalidCellsCounter++;
+                    // If every solution has a queen here, place it
+                    board[column][row] = 1;
+                    changed.add(column * size + row);
                 }
             }
         }
+    }
+
+    /**
+     * Finds which variables can be true and which can be false in at least
+     * one satisfying assignment of the rootBDD, visiting every node once.
+     *
+     * A variable can take a value if a reachable node for the variable has
+     * a non-false child for that value, or if a path to a non-false node
+     * skips the variable entirely (in which case it can take both values).
+     */
+    private void findPossibleValues(boolean[] canBeTrue, boolean[] canBeFalse) {
+        int nVars = canBeTrue.length;
+
+        if (rootBDD.isZero()) {
+            return;
+        }
+
+        // Levels skipped by an edge are marked in a difference array,
+        // such that marking a range costs the same as marking a level
+        int[] skipped = new int[nVars + 1];
+        markSkipped(skipped, 0, levelOf(rootBDD));
 
-        // Checking the remaining valid positions
-        checkRemainingValidPositions(invalidCellsCounter);
+        visitNode(rootBDD, new HashSet<Integer>(), skipped, canBeTrue, canBeFalse);
+
+        int skippedRanges = 0;
+        for (int level = 0; level < nVars; level++) {
+            skippedRanges += skipped[level];
+            if (skippedRanges > 0) {
+                int variable = fact.level2Var(level);
+                canBeTrue[variable] = true;
+                canBeFalse[variable] = true;
+            }
+        }
     }
 
     /**
-     * Helper method that checks whether the remaining valid positions
-     * are equal to size
+     * Helper method that visits the given node and its descendants,
+     * unless they have been visited before
      */
-    private void checkRemainingValidPositions(int invalidCells) {
+    private void visitNode(BDD node, HashSet<Integer> visited, int[] skipped,
+                           boolean[] canBeTrue, boolean[] canBeFalse) {
+        // In the JFactory the hash code of a BDD is its node number
+        if (node.isOne() || !visited.add(node.hashCode())) {
+            return;
+        }
 
-        int validCells = size*size - invalidCells;
+        int level = levelOf(node);
+        int variable = node.var();
 
-        if(validCells == size) {
+        BDD low = node.low();
+        if (!low.isZero()) {
+            canBeFalse[variable] = true;
+            markSkipped(skipped, level + 1, levelOf(low));
+            visitNode(low, visited, skipped, canBeTrue, canBeFalse);
+        }
+        low.free();
 
-            // If true then on the remaining valid positions a Queen
-            // should be placed
-            for (int column = 0; column < board.length; column++) {
-                for (int row = 0; row < board[column].length; row++) {
-                    if (board[column][row] == 0) {
-                        board[column][row] = 1;
-                    }
-                }
+        BDD high = node.high();
+        if (!high.isZero()) {
+            canBeTrue[variable] = true;
+            markSkipped(skipped, level + 1, levelOf(high));
+            visitNode(high, visited, skipped, canBeTrue, canBeFalse);
+        }
+        high.free();
+    }
+
+    /**
+     * Returns the level of the given node, where the terminal
+     * nodes are placed below the last variable
+     */
+    private int levelOf(BDD node) {
+        if (node.isOne() || node.isZero()) {
+            return size*size;
+        }
+        return node.level();
+    }
+
+    /**
+     * Marks the levels from (including) to (excluding) as skipped
+     */
+    private void markSkipped(int[] skipped, int from, int to) {
+        if (from < to) {
+            skipped[from]++;
+            skipped[to]--;
+        }
+    }
+
+    /**
+     * A placed queen that can be undone: the root before the queen was
+     * placed and the positions that changed because of it
+     */
+    private static class Step {
+        final BDD root;
+        final int[] changed;
+
+        Step(BDD root, ArrayList<Integer> changed) {
+            this.root = root;
+            this.changed = new int[changed.size()];
+            for (int i = 0; i < this.changed.length; i++) {
+                this.changed[i] = changed.get(i);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+import net.sf.javabdd.*;
+
+/**
+ * Collects the metrics of the BDD used by QueensLogic: how long it took to build,
+ * how big it got, and the garbage collection, reordering and cache statistics of
+ * its factory.
+ *
+ * The factory's own printing of garbage collections and resizes is replaced by
+ * counting them here, and reorderings are printed as a single line. Note that
+ * the JFactory only updates its cache statistics if it is compiled with
+ * CACHESTATS enabled, which the bundled jar isn't, so they will be zero unless
+ * another build of JavaBDD is used.
+ */
+public class QueensMetrics {
+
+    private final BDDFactory fact;
+
+    private long buildMillis;   // Time used to build the BDD
+    private int peakNodes;      // Highest number of allocated nodes while building
+    private int rootNodes;      // Number of nodes in the finished BDD
+
+    private int resizes;        // Number of times the node table has grown
+    private long gcMillis;      // Total time spent on garbage collection
+
+    private int reorders;       // Number of times the variables have been reordered
+    private long reorderMillis; // Total time spent on reordering
+    private long reorderGain;   // Total number of nodes removed by reordering
+
+    /**
+     * Creates the metrics of the given factory and starts listening to its
+     * garbage collections and resizes
+     */
+    public QueensMetrics(BDDFactory fact) {
+        this.fact = fact;
+
+        try {
+            fact.registerGCCallback(this, getClass().getMethod("onGarbageCollection", int.class, BDDFactory.GCStats.class));
+            fact.registerResizeCallback(this, getClass().getMethod("onResize", int.class, int.class));
+            fact.registerReorderCallback(this, getClass().getMethod("onReorder", int.class, BDDFactory.ReorderStats.class));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Called by the factory before (pre = 1) and after (pre = 0) every garbage collection
+     */
+    public void onGarbageCollection(int pre, BDDFactory.GCStats stats) {
+        if (pre == 0) {
+            gcMillis = stats.sumtime;
+        }
+    }
+
+    /**
+     * Called by the factory whenever the node table grows
+     */
+    public void onResize(int oldSize, int newSize) {
+        resizes++;
+    }
+
+    /**
+     * Called by the factory before (pre = 1) and after (pre = 0) every reordering
+     */
+    public void onReorder(int pre, BDDFactory.ReorderStats stats) {
+        if (pre == 0) {
+            reorders++;
+            reorderMillis += stats.time;
+            reorderGain += stats.usednum_before - stats.usednum_after;
+            System.out.println("Reordered variables in " + stats.time + " ms: "
+                    + stats.usednum_before + " -> " + stats.usednum_after + " nodes");
+        }
+    }
+
+    /**
+     * Records the result of building the BDD
+     */
+    void recordBuild(long buildMillis, int peakNodes, int rootNodes) {
+        this.buildMillis = buildMillis;
+        this.peakNodes = peakNodes;
+        this.rootNodes = rootNodes;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    public int getPeakNodes() {
+        return peakNodes;
+    }
+
+    public int getRootNodes() {
+        return rootNodes;
+    }
+
+    public int getResizes() {
+        return resizes;
+    }
+
+    public long getGCMillis() {
+        return gcMillis;
+    }
+
+    public int getReorders() {
+        return reorders;
+    }
+
+    public long getReorderMillis() {
+        return reorderMillis;
+    }
+
+    public long getReorderGain() {
+        return reorderGain;
+    }
+
+    public int getNodeTableSize() {
+        return fact.getNodeTableSize();
+    }
+
+    public int getCacheSize() {
+        return fact.getCacheSize();
+    }
+
+    public BDDFactory.GCStats getGCStats() {
+        return fact.getGCStats();
+    }
+
+    public BDDFactory.CacheStats getCacheStats() {
+        return fact.getCacheStats();
+    }
+
+    @Override
+    public String toString() {
+        BDDFactory.CacheStats cache = getCacheStats();
+        return buildMillis + " ms, peak " + peakNodes + " nodes, result " + rootNodes + " nodes"
+                + "\nnode table " + getNodeTableSize() + " (" + resizes + " resizes), cache " + getCacheSize()
+                + "\n" + getGCStats().num + " garbage collections in " + gcMillis + " ms"
+                + (reorders > 0 ? ", " + reorders + " reorders in " + reorderMillis + " ms removing " + reorderGain + " nodes" : "")
+                + "\noperation cache " + cache.opHit + " hits / " + cache.opMiss + " misses"
+                + ", unique table " + cache.uniqueHit + " hits / " + cache.uniqueMiss + " misses";
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Counts and enumerates the solutions to the n-queens problem, optionally only those
+ * consistent with a board from an IQueensLogic (with queens where it has a 1 and no
+ * queens where it has a -1).
+ *
+ * The solutions are found row by row, where the columns and diagonals taken by the
+ * queens placed so far are kept as bitmasks, so boards can be at most 64 wide.
+ * Counting splits the first rows into tasks for a fork-join pool. If the constraints
+ * are the same when mirrored left to right, only the solutions with a queen in the left
+ * half of the first row are searched, and those not on the middle column counted twice.
+ */
+public class QueensSolver {
+
+    // The rows below this are searched by a single task
+    private static final int SPLIT_DEPTH = 3;
+
+    private final int size;
+    private final long full;       // A bit for every column
+    private final long[] allowed;  // The columns where the constraints allow a queen on every row
+    private final boolean mirrored; // Whether the constraints are the same when mirrored left to right
+
+    /**
+     * Creates a solver for an empty board of the given size
+     */
+    public QueensSolver(int size) {
+        this(new int[size][size]);
+    }
+
+    /**
+     * Creates a solver for the solutions consistent with the given board, indexed [column][row]
+     * as returned by IQueensLogic.getBoard()
+     */
+    public QueensSolver(int[][] board) {
+        size = board.length;
+        if (size < 1 || size > 64) {
+            throw new IllegalArgumentException("Board size should be between 1 and 64, was " + size);
+        }
+        full = size == 64 ? -1L : (1L << size) - 1;
+
+        allowed = new long[size];
+        boolean symmetric = true;
+        for (int row = 0; row < size; row++) {
+            long queens = 0;
+            long free = 0;
+            for (int column = 0; column < size; column++) {
+                if (board[column][row] == 1) {
+                    queens |= 1L << column;
+                } else if (board[column][row] == 0) {
+                    free |= 1L << column;
+                }
+            }
+
+            // A queen on the row rules out every other column
+            allowed[row] = queens == 0 ? free : queens;
+            symmetric &= allowed[row] == mirror(allowed[row]);
+        }
+        mirrored = symmetric;
+    }
+
+    /**
+     * Returns the given columns mirrored left to right
+     */
+    private long mirror(long columns) {
+        return Long.reverse(columns) >>> (64 - size);
+    }
+
+    /**
+     * Returns the number of solutions, using all processors of the common fork-join pool
+     */
+    public long count() {
+        return ForkJoinPool.commonPool().invoke(new CountTask(0, 0, 0, 0));
+    }
+
+    /**
+     * Returns the number of solutions extending the queens placed on the rows above the
+     * given one, where cols, ld and rd are the columns and diagonals they attack
+     */
+    private long countFrom(int row, long cols, long ld, long rd) {
+        if (row == size) {
+            return 1;
+        }
+
+        long count = 0;
+        long free = allowed[row] & ~(cols | ld | rd);
+        while (free != 0) {
+            long bit = free & -free;
+            free ^= bit;
+            count += countFrom(row + 1, cols | bit, ((ld | bit) << 1) & full, (rd | bit) >>> 1);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the solutions below a node of one of the first rows, with a task for every child
+     */
+    private class CountTask extends RecursiveTask<Long> {
+        static final long serialVersionUID = 1L;
+
+        private final int row;
+        private final long cols, ld, rd;
+
+        CountTask(int row, long cols, long ld, long rd) {
+            this.row = row;
+            this.cols = cols;
+            this.ld = ld;
+            this.rd = rd;
+        }
+
+        @Override
+        protected Long compute() {
+            if (row >= SPLIT_DEPTH || row == size) {
+                return countFrom(row, cols, ld, rd);
+            }
+
+            List<CountTask> children = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            long free = allowed[row] & ~(cols | ld | rd);
+            while (free != 0) {
+                long bit = free & -free;
+                free ^= bit;
+
+                // With symmetric constraints a first queen right of the middle gives the
+                // mirror images of the solutions with the first queen left of it
+                int weight = 1;
+                if (row == 0 && mirrored) {
+                    int column = Long.numberOfTrailingZeros(bit);
+                    int mirroredColumn = size - 1 - column;
+                    if (column > mirroredColumn) {
+                        continue;
+                    }
+                    if (column < mirroredColumn) {
+                        weight = 2;
+                    }
+                }
+
+                children.add(new CountTask(row + 1, cols | bit, ((ld | bit) << 1) & full, (rd | bit) >>> 1));
+                weights.add(weight);
+            }
+
+            invokeAll(children);
+            long count = 0;
+            for (int i = 0; i < children.size(); i++) {
+                count += children.get(i).join() * weights.get(i);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Returns a stream of all solutions, each given as the column of the queen on
+     * every row. The solutions are found while the stream is consumed, so they are
+     * never all kept in memory. The stream can be made parallel, in which case the
+     * queens of the first row are split between the threads.
+     */
+    public Stream<int[]> solutions() {
+        return StreamSupport.stream(new SolutionSpliterator(allowed[0]), false);
+    }
+
+    /**
+     * Finds the solutions with the first queen in one of the given columns using a
+     * depth-first search, which is paused whenever a solution is found
+     */
+    private class SolutionSpliterator implements Spliterator<int[]> {
+        private long pending;  // First row columns whose solutions haven't been searched yet
+        private int row = -1;  // The row being searched, or -1 between first row columns
+
+        // The state of the search on every row
+        private final long[] free = new long[size];
+        private final long[] cols = new long[size];
+        private final long[] ld = new long[size];
+        private final long[] rd = new long[size];
+        private final int[] queens = new int[size];
+
+        SolutionSpliterator(long pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            while (true) {
+                if (row < 0) {
+                    // Start searching below the next column of the first row
+                    if (pending == 0) {
+                        return false;
+                    }
+                    free[0] = pending & -pending;
+                    pending ^= free[0];
+                    row = 0;
+                }
+
+                if (free[row] == 0) {
+                    // Every column on the row has been tried
+                    row--;
+                    continue;
+                }
+
+                long bit = free[row] & -free[row];
+                free[row] ^= bit;
+                queens[row] = Long.numberOfTrailingZeros(bit);
+
+                if (row == size - 1) {
+                    action.accept(queens.clone());
+                    return true;
+                }
+
+                long nextCols = cols[row] | bit;
+                long nextLd = ((ld[row] | bit) << 1) & full;
+                long nextRd = (rd[row] | bit) >>> 1;
+                row++;
+                cols[row] = nextCols;
+                ld[row] = nextLd;
+                rd[row] = nextRd;
+                free[row] = allowed[row] & ~(nextCols | nextLd | nextRd);
+            }
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            // Hand over half of the first row columns that haven't been started
+            int remaining = Long.bitCount(pending);
+            if (remaining < 2) {
+                return null;
+            }
+
+            long half = 0;
+            for (int i = 0; i < remaining / 2; i++) {
+                long bit = pending & -pending;
+                pending ^= bit;
+                half |= bit;
+            }
+            return new SolutionSpliterator(half);
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | IMMUTABLE | DISTINCT;
+        }
+    }
+
+    /**
+     * Prints the number of solutions for the given board size and the first of them.
+     * Valid arguments: size
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java QueensSolver size");
+            System.exit(1);
+        }
+        QueensSolver solver = new QueensSolver(Integer.parseInt(args[0]));
+
+        long start = System.nanoTime();
+        long count = solver.count();
+        System.out.println(count + " solutions, counted in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        solver.solutions().findFirst().ifPresent(queens -> {
+            StringBuilder columns = new StringBuilder("First solution (column of the queen on every row):");
+            for (int column : queens) {
+                columns.append(' ').append(column);
+            }
+            System.out.println(columns);
+        });
+    }
+}
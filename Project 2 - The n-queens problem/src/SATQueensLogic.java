@@ -0,0 +1,218 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Implementation of IQueensLogic for very large boards using an incremental SAT solver.
+ *
+ * The rules are encoded as clauses once: exactly one queen on every row and column,
+ * and at most one on every diagonal. The "at most one" constraints use the sequential
+ * (ladder) encoding, which takes a linear number of clauses and helper variables
+ * instead of a clause for every pair of positions on the line.
+ *
+ * The inserted queens are never added as clauses, but passed to the solver as
+ * assumptions, so undoing a queen doesn't need a new solver and everything the
+ * solver learned is reused across clicks. A position is valid if the solver finds a
+ * solution assuming a queen on it. Like BitsetLogic every solution found witnesses
+ * all of its positions, and the solver is steered towards positions that aren't
+ * witnessed yet by setting their phase to true.
+ *
+ * Each check may use at most -Dqueens.conflicts=<conflicts> conflicts. A position whose
+ * check runs out of conflicts is left as allowed.
+ */
+public class SATQueensLogic implements IQueensLogic {
+
+    private static final long CONFLICTS = Long.getLong("queens.conflicts", 10000);
+
+    private int size;		// Size of quadratic game board (i.e. size = #rows = #columns)
+    private int[][] board;	// Content of the board. Possible values: 0 (empty), 1 (queen), -1 (no queen allowed)
+
+    private SATSolver solver;
+    private int[][] variables;          // The variable of every position, indexed [column][row]
+    private ArrayList<int[]> queens;    // The column and row of the inserted queens, last inserted last
+    private boolean[][] witnessed;      // [column][row] whether the position is part of a found solution
+
+    @Override
+    public void initializeBoard(int size) {
+        this.size = size;
+        queens = new ArrayList<>();
+
+        solver = new SATSolver();
+        variables = new int[size][size];
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                variables[column][row] = solver.newVar();
+            }
+        }
+
+        // Exactly one queen on every row and column
+        for (int i = 0; i < size; i++) {
+            int[] row = new int[size];
+            int[] column = new int[size];
+            for (int j = 0; j < size; j++) {
+                row[j] = variables[j][i];
+                column[j] = variables[i][j];
+            }
+            solver.addClause(row);
+            solver.addClause(column);
+            addAtMostOne(row);
+            addAtMostOne(column);
+        }
+
+        // At most one queen on every diagonal, in both directions
+        for (int d = -(size - 2); d <= size - 2; d++) {
+            ArrayList<Integer> down = new ArrayList<>();
+            ArrayList<Integer> up = new ArrayList<>();
+            for (int column = 0; column < size; column++) {
+                int row = column + d;
+                if (0 <= row && row < size) {
+                    down.add(variables[column][row]);
+                    up.add(variables[column][size - 1 - row]);
+                }
+            }
+            addAtMostOne(down.stream().mapToInt(Integer::intValue).toArray());
+            addAtMostOne(up.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        updateBoard();
+    }
+
+    /**
+     * Adds the sequential encoding of at most one of the given variables being true:
+     * helper s[i] is true if one of the first i + 1 variables is, and a variable may
+     * only be true if no variable before it is.
+     *
+     * Propagation sets every helper that matters once the variables are assigned, so
+     * the solver never decides on them. Deciding on them would mostly recreate the
+     * previous solution from their saved phases.
+     */
+    private void addAtMostOne(int[] vars) {
+        int n = vars.length;
+        if (n < 2) {
+            return;
+        }
+
+        int[] s = new int[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            s[i] = solver.newVar(false);
+        }
+
+        solver.addClause(-vars[0], s[0]);
+        for (int i = 1; i < n - 1; i++) {
+            solver.addClause(-vars[i], s[i]);
+            solver.addClause(-s[i - 1], s[i]);
+            solver.addClause(-vars[i], -s[i - 1]);
+        }
+        solver.addClause(-vars[n - 1], -s[n - 2]);
+    }
+
+    @Override
+    public int[][] getBoard() {
+        return board;
+    }
+
+    @Override
+    public void insertQueen(int column, int row) {
+        // Only empty positions can get a queen
+        if (board[column][row] != 0) {
+            return;
+        }
+
+        queens.add(new int[] { column, row });
+        updateBoard();
+    }
+
+    @Override
+    public boolean undo() {
+        if (queens.isEmpty()) {
+            return false;
+        }
+
+        queens.remove(queens.size() - 1);
+        updateBoard();
+        return true;
+    }
+
+    /**
+     * Recomputes the board from the inserted queens
+     */
+    private void updateBoard() {
+        board = new int[size][size];
+        witnessed = new boolean[size][size];
+
+        int[] assumptions = new int[queens.size() + 1];
+        for (int i = 0; i < queens.size(); i++) {
+            int[] queen = queens.get(i);
+            assumptions[i] = variables[queen[0]][queen[1]];
+            board[queen[0]][queen[1]] = 1;
+        }
+        int last = queens.size();
+
+        // First look for any solution, as it witnesses a position on every row
+        int result = solve(Arrays.copyOf(assumptions, last));
+
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                if (board[column][row] == 1) {
+                    continue; // An inserted queen
+                }
+
+                if (result == SATSolver.UNSAT || attacked(column, row)) {
+                    board[column][row] = -1;
+                } else if (!witnessed[column][row]) {
+                    // Look for a solution with a queen on the position
+                    assumptions[last] = variables[column][row];
+                    if (solve(assumptions) == SATSolver.UNSAT) {
+                        board[column][row] = -1;
+                    }
+                }
+            }
+        }
+
+        QueensBoard.markForcedQueens(board);
+    }
+
+    /**
+     * Returns whether an inserted queen attacks the given position, which is
+     * cheaper to check directly than with the solver
+     */
+    private boolean attacked(int column, int row) {
+        for (int[] queen : queens) {
+            if (queen[0] == column || queen[1] == row
+                    || Math.abs(queen[0] - column) == Math.abs(queen[1] - row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solves under the given assumptions, preferring positions that aren't witnessed
+     * yet. Marks the positions of the solution found as witnessed.
+     */
+    private int solve(int[] assumptions) {
+        for (int column = 0; column < size; column++) {
+            for (int row = 0; row < size; row++) {
+                solver.setPhase(variables[column][row], !witnessed[column][row]);
+            }
+        }
+
+        int result = solver.solve(CONFLICTS, assumptions);
+        if (result == SATSolver.SAT) {
+            for (int column = 0; column < size; column++) {
+                for (int row = 0; row < size; row++) {
+                    if (solver.modelValue(variables[column][row])) {
+                        witnessed[column][row] = true;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the solver, for its statistics
+     */
+    public SATSolver getSolver() {
+        return solver;
+    }
+}
@@ -0,0 +1,599 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A minimal CDCL SAT solver: two watched literals for unit propagation, first-UIP
+ * clause learning with non-chronological backjumping, VSIDS variable activities,
+ * phase saving and Luby restarts.
+ *
+ * The solver is incremental: clauses can be added between calls to solve(), and
+ * solve() takes assumptions, literals that only hold for that call. Clauses learned
+ * under assumptions still hold without them, so they are kept for later calls and
+ * only the least active are removed when there are too many.
+ *
+ * Variables are numbered from 1 and literals are given as in the DIMACS format,
+ * v for the variable being true and -v for it being false.
+ */
+public class SATSolver {
+
+    // Results of solve()
+    public static final int SAT = 1;
+    public static final int UNSAT = 0;
+    public static final int UNKNOWN = -1; // The conflict budget ran out
+
+    private static final int RESTART_BASE = 100;  // Conflicts of the first restart
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    private static class Clause {
+        int[] lits; // Internal literals, the first two are watched
+        boolean learnt;
+        boolean deleted;
+        double activity;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    private int vars;
+    private boolean ok = true; // False once the clauses are unsatisfiable without assumptions
+
+    private final ArrayList<Clause> clauses = new ArrayList<>();
+    private final ArrayList<Clause> learnts = new ArrayList<>();
+    private final ArrayList<ArrayList<Clause>> watches = new ArrayList<>(); // By internal literal
+    private double maxLearnts;
+
+    // The state of every variable, indexed by variable
+    private byte[] value = new byte[1];       // 1 true, -1 false, 0 unassigned
+    private int[] level = new int[1];         // The decision level it was assigned at
+    private Clause[] reason = new Clause[1];  // The clause that implied it, or null for decisions
+    private boolean[] phase = new boolean[1]; // The value it gets when decided on
+    private boolean[] seen = new boolean[1];
+    private boolean[] decision = new boolean[1]; // Whether the solver may decide on it
+    private double[] activity = new double[1];
+    private double varInc = 1;
+    private double clauseInc = 1;
+
+    // The assigned literals in order, and where every decision level starts
+    private int[] trail = new int[1];
+    private int trailSize;
+    private int[] trailLim = new int[1];
+    private int decisionLevel;
+    private int qhead; // The first literal on the trail that hasn't been propagated
+
+    // The unassigned variables ordered by activity, as a binary heap
+    private int[] heap = new int[1];
+    private int heapSize;
+    private int[] heapIndex = new int[1]; // Position of every variable in the heap, or -1
+
+    private boolean[] model; // The values of the last satisfying assignment
+
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+
+    /**
+     * Adds a new variable and returns its number
+     */
+    public int newVar() {
+        return newVar(true);
+    }
+
+    /**
+     * Adds a new variable and returns its number. A variable that isn't a decision
+     * variable only gets a value by propagation, and is false in the model otherwise,
+     * so the clauses must hold for that value once the decision variables are assigned.
+     */
+    public int newVar(boolean decide) {
+        int v = ++vars;
+        if (v >= value.length) {
+            int capacity = value.length * 2;
+            value = Arrays.copyOf(value, capacity);
+            level = Arrays.copyOf(level, capacity);
+            reason = Arrays.copyOf(reason, capacity);
+            phase = Arrays.copyOf(phase, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            decision = Arrays.copyOf(decision, capacity);
+            activity = Arrays.copyOf(activity, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            trailLim = Arrays.copyOf(trailLim, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+        }
+        while (watches.size() < 2 * v + 2) {
+            watches.add(new ArrayList<>());
+        }
+        decision[v] = decide;
+        heapIndex[v] = -1;
+        if (decide) {
+            heapInsert(v);
+        }
+        return v;
+    }
+
+    public int getVarCount() {
+        return vars;
+    }
+
+    /**
+     * Adds a clause, which must hold in every later call to solve(). Returns false
+     * if the clauses have become unsatisfiable.
+     */
+    public boolean addClause(int... literals) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+
+        // Leave out literals that are false, and clauses that are true, at level 0
+        int[] lits = new int[literals.length];
+        int size = 0;
+        for (int literal : literals) {
+            int lit = toInternal(literal);
+            byte litValue = valueOf(lit);
+            if (litValue > 0) {
+                return true;
+            }
+            if (litValue == 0) {
+                lits[size++] = lit;
+            }
+        }
+        lits = Arrays.copyOf(lits, size);
+
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            assign(lits[0], null);
+            ok = propagate() == null;
+        } else {
+            Clause clause = new Clause(lits, false);
+            attach(clause);
+            clauses.add(clause);
+        }
+        return ok;
+    }
+
+    /**
+     * Sets the value a variable gets when it is decided on, until it is assigned again
+     */
+    public void setPhase(int var, boolean positive) {
+        phase[var] = positive;
+    }
+
+    /**
+     * Searches for an assignment satisfying the clauses and the given assumptions,
+     * using at most the given number of conflicts. Returns SAT, UNSAT (under the
+     * assumptions) or UNKNOWN if the conflicts ran out.
+     */
+    public int solve(long conflictBudget, int... assumptions) {
+        model = null;
+        if (!ok) {
+            return UNSAT;
+        }
+        if (maxLearnts == 0) {
+            maxLearnts = Math.max(clauses.size() / 3.0, 1000);
+        }
+
+        long limit = conflicts + conflictBudget;
+        int[] internal = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) {
+            internal[i] = toInternal(assumptions[i]);
+        }
+
+        for (int restart = 0; ; restart++) {
+            int result = search(RESTART_BASE * luby(restart), limit, internal);
+            if (result != UNKNOWN || conflicts >= limit) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the variable in the assignment found by the last call to
+     * solve(), which must have returned SAT
+     */
+    public boolean modelValue(int var) {
+        return model[var];
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public int getLearntCount() {
+        return learnts.size();
+    }
+
+    /**
+     * Searches until a solution is found, the assumptions are proven inconsistent,
+     * or the given number of conflicts (or the conflict limit) is reached.
+     * Always returns at decision level 0.
+     */
+    private int search(int restartConflicts, long conflictLimit, int[] assumptions) {
+        int restartCount = 0;
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                restartCount++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return UNSAT;
+                }
+
+                int[] learnt = analyze(conflict);
+                cancelUntil(backjumpLevel(learnt));
+                if (learnt.length == 1) {
+                    assign(learnt[0], null);
+                } else {
+                    Clause clause = new Clause(learnt, true);
+                    attach(clause);
+                    learnts.add(clause);
+                    bumpClause(clause);
+                    assign(learnt[0], clause);
+                }
+
+                varInc /= VAR_DECAY;
+                clauseInc /= CLAUSE_DECAY;
+                continue;
+            }
+
+            if (restartCount >= restartConflicts || conflicts >= conflictLimit) {
+                cancelUntil(0);
+                return UNKNOWN;
+            }
+            if (learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+            }
+
+            // Decide on the assumptions first, one level each
+            int next = -1;
+            while (decisionLevel < assumptions.length) {
+                int lit = assumptions[decisionLevel];
+                byte litValue = valueOf(lit);
+                if (litValue > 0) {
+                    newDecisionLevel();
+                } else if (litValue < 0) {
+                    cancelUntil(0);
+                    return UNSAT;
+                } else {
+                    next = lit;
+                    break;
+                }
+            }
+
+            if (next < 0) {
+                int var = pickBranchVar();
+                if (var < 0) {
+                    // Every decision variable is assigned without conflict
+                    model = new boolean[vars + 1];
+                    for (int v = 1; v <= vars; v++) {
+                        model[v] = value[v] > 0;
+                    }
+                    cancelUntil(0);
+                    return SAT;
+                }
+                next = 2 * var + (phase[var] ? 0 : 1);
+            }
+
+            decisions++;
+            newDecisionLevel();
+            assign(next, null);
+        }
+    }
+
+    /**
+     * Propagates the assigned literals that haven't been yet. Returns the clause
+     * that became false, or null if there is no conflict.
+     */
+    private Clause propagate() {
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            ArrayList<Clause> watching = watches.get(falseLit);
+            propagations++;
+
+            int i = 0, j = 0;
+            int watchCount = watching.size();
+            while (i < watchCount) {
+                Clause clause = watching.get(i++);
+                if (clause.deleted) {
+                    continue; // Removed lazily from the watches
+                }
+
+                // Make sure the false literal is the second one
+                int[] lits = clause.lits;
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (valueOf(lits[0]) > 0) {
+                    watching.set(j++, clause);
+                    continue;
+                }
+
+                // Look for another literal to watch
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (valueOf(lits[k]) >= 0) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watches.get(lits[1]).add(clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+
+                // The clause is unit or false
+                watching.set(j++, clause);
+                if (valueOf(lits[0]) < 0) {
+                    while (i < watchCount) {
+                        watching.set(j++, watching.get(i++));
+                    }
+                    watching.subList(j, watchCount).clear();
+                    qhead = trailSize;
+                    return clause;
+                }
+                assign(lits[0], clause);
+            }
+            watching.subList(j, watchCount).clear();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the clause learned from a conflict, cutting at the first unique
+     * implication point. The asserting literal is first, and the literal of the
+     * highest remaining level second.
+     */
+    private int[] analyze(Clause conflict) {
+        int[] learnt = new int[decisionLevel + 1];
+        int size = 1; // learnt[0] is the asserting literal, set at the end
+        int pending = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+
+        do {
+            if (clause.learnt) {
+                bumpClause(clause);
+            }
+            for (int k = lit < 0 ? 0 : 1; k < clause.lits.length; k++) {
+                int q = clause.lits[k];
+                int var = q >> 1;
+                if (!seen[var] && level[var] > 0) {
+                    seen[var] = true;
+                    bumpVar(var);
+                    if (level[var] >= decisionLevel) {
+                        pending++;
+                    } else {
+                        if (size == learnt.length) {
+                            learnt = Arrays.copyOf(learnt, size * 2);
+                        }
+                        learnt[size++] = q;
+                    }
+                }
+            }
+
+            // The next literal of the current level to resolve on
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            lit = trail[index--];
+            clause = reason[lit >> 1];
+            seen[lit >> 1] = false;
+            pending--;
+        } while (pending > 0);
+        learnt[0] = lit ^ 1;
+        learnt = Arrays.copyOf(learnt, size);
+
+        for (int k = 1; k < size; k++) {
+            seen[learnt[k] >> 1] = false;
+        }
+
+        // Watch the literal that is unassigned last when backjumping
+        int highest = 1;
+        for (int k = 2; k < size; k++) {
+            if (level[learnt[k] >> 1] > level[learnt[highest] >> 1]) {
+                highest = k;
+            }
+        }
+        if (size > 1) {
+            int tmp = learnt[1];
+            learnt[1] = learnt[highest];
+            learnt[highest] = tmp;
+        }
+        return learnt;
+    }
+
+    private int backjumpLevel(int[] learnt) {
+        return learnt.length == 1 ? 0 : level[learnt[1] >> 1];
+    }
+
+    /**
+     * Removes half of the learned clauses, the least active first, except the binary
+     * ones and those that are the reason of an assignment
+     */
+    private void reduceLearnts() {
+        learnts.sort(Comparator.comparingDouble(clause -> clause.activity));
+        int half = learnts.size() / 2;
+        ArrayList<Clause> kept = new ArrayList<>();
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            boolean locked = reason[clause.lits[0] >> 1] == clause && valueOf(clause.lits[0]) > 0;
+            if (i < half && clause.lits.length > 2 && !locked) {
+                clause.deleted = true;
+            } else {
+                kept.add(clause);
+            }
+        }
+        learnts.clear();
+        learnts.addAll(kept);
+        maxLearnts *= 1.1;
+    }
+
+    private void attach(Clause clause) {
+        watches.get(clause.lits[0]).add(clause);
+        watches.get(clause.lits[1]).add(clause);
+    }
+
+    private void assign(int lit, Clause from) {
+        int var = lit >> 1;
+        value[var] = (byte) ((lit & 1) == 0 ? 1 : -1);
+        level[var] = decisionLevel;
+        reason[var] = from;
+        trail[trailSize++] = lit;
+    }
+
+    private void newDecisionLevel() {
+        trailLim[decisionLevel++] = trailSize;
+    }
+
+    /**
+     * Unassigns every literal above the given decision level, saving their phases
+     */
+    private void cancelUntil(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int i = trailSize - 1; i >= trailLim[target]; i--) {
+            int var = trail[i] >> 1;
+            phase[var] = value[var] > 0;
+            value[var] = 0;
+            reason[var] = null;
+            if (heapIndex[var] < 0 && decision[var]) {
+                heapInsert(var);
+            }
+        }
+        trailSize = trailLim[target];
+        qhead = trailSize;
+        decisionLevel = target;
+    }
+
+    private int pickBranchVar() {
+        while (heapSize > 0) {
+            int var = heapRemoveMax();
+            if (value[var] == 0) {
+                return var;
+            }
+        }
+        return -1;
+    }
+
+    private void bumpVar(int var) {
+        activity[var] += varInc;
+        if (activity[var] > 1e100) {
+            for (int v = 1; v <= vars; v++) {
+                activity[v] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        if (heapIndex[var] >= 0) {
+            heapUp(heapIndex[var]);
+        }
+    }
+
+    private void bumpClause(Clause clause) {
+        clause.activity += clauseInc;
+        if (clause.activity > 1e20) {
+            for (Clause learnt : learnts) {
+                learnt.activity *= 1e-20;
+            }
+            clauseInc *= 1e-20;
+        }
+    }
+
+    private byte valueOf(int lit) {
+        byte v = value[lit >> 1];
+        return (lit & 1) == 0 ? v : (byte) -v;
+    }
+
+    private int toInternal(int literal) {
+        int var = Math.abs(literal);
+        if (var == 0 || var > vars) {
+            throw new IllegalArgumentException("Unknown variable in literal " + literal);
+        }
+        return 2 * var + (literal < 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the i'th element of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     */
+    private static int luby(int i) {
+        int size = 1, seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1 << seq;
+    }
+
+    private void heapInsert(int var) {
+        heapIndex[var] = heapSize;
+        heap[heapSize++] = var;
+        heapUp(heapSize - 1);
+    }
+
+    private int heapRemoveMax() {
+        int max = heap[0];
+        heapIndex[max] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return max;
+    }
+
+    private void heapUp(int i) {
+        int var = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[var]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+
+    private void heapDown(int i) {
+        int var = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[var]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+}
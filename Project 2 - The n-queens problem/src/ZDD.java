@@ -0,0 +1,569 @@
+import java.util.Arrays;
+
+/**
+ * A small zero-suppressed decision diagram (ZDD) package. A ZDD represents a family of
+ * sets of variables, and is much smaller than a BDD for families of sparse sets, such
+ * as the solutions to the n-queens problem (n of the n*n variables in every set).
+ *
+ * Nodes are referred to by their index. Index 0 is the empty family and index 1 the
+ * family holding only the empty set. All nodes are kept in primitive arrays together
+ * with a unique table (chained through the next array) and a direct-mapped operation
+ * cache, so no objects are created per node.
+ *
+ * Garbage collection only happens at the start of a public operation, and keeps the
+ * nodes referenced through ref() as well as the arguments of that operation. Any other
+ * node that is used across operations must be referenced, and dereferenced when it is
+ * no longer needed.
+ */
+public class ZDD {
+
+    public static final int EMPTY = 0; // The empty family
+    public static final int BASE = 1;  // The family holding only the empty set
+
+    private static final int TERMINAL_VAR = Integer.MAX_VALUE; // Below all variables
+
+    // Operation codes used as keys in the cache
+    private static final int UNION = 1;
+    private static final int INTERSECT = 2;
+    private static final int DIFFERENCE = 3;
+    private static final int OFFSET = 4;
+    private static final int ONSET = 5;
+    private static final int CHANGE = 6;
+
+    // The nodes
+    private int[] var;
+    private int[] lo;
+    private int[] hi;
+    private int[] next;   // The next node in the same bucket of the unique table, or free list
+    private int[] refs;   // External references to every node
+    private int[] buckets;
+    private int capacity;
+    private int used;     // Nodes below this index have been allocated at some point
+    private int freeList = -1;
+    private int freeCount;
+
+    // The operation cache
+    private final int[] cacheOp;
+    private final int[] cacheA;
+    private final int[] cacheB;
+    private final int[] cacheResult;
+
+    // Memos of the traversals, valid for entries with the current stamp
+    private int[] stamps;
+    private double[] counts;
+    private int[] results;
+    private int stamp;
+
+    private int peakNodes;
+    private int gcCount;
+    private long gcMillis;
+
+    /**
+     * Creates an empty ZDD package
+     * @param nodes The initial number of nodes, which grows when needed
+     * @param cacheSize The number of entries in the operation cache (rounded up to a power of 2)
+     */
+    public ZDD(int nodes, int cacheSize) {
+        capacity = Math.max(nodes, 16);
+        var = new int[capacity];
+        lo = new int[capacity];
+        hi = new int[capacity];
+        next = new int[capacity];
+        refs = new int[capacity];
+        buckets = new int[Integer.highestOneBit(capacity - 1) << 1];
+        Arrays.fill(buckets, -1);
+        stamps = new int[capacity];
+        counts = new double[capacity];
+        results = new int[capacity];
+
+        int cache = Integer.highestOneBit(Math.max(cacheSize, 2) - 1) << 1;
+        cacheOp = new int[cache];
+        cacheA = new int[cache];
+        cacheB = new int[cache];
+        cacheResult = new int[cache];
+
+        // The terminals are never collected
+        for (int terminal = EMPTY; terminal <= BASE; terminal++) {
+            var[terminal] = TERMINAL_VAR;
+            refs[terminal] = 1;
+        }
+        used = 2;
+    }
+
+    /**
+     * Returns the node with the given variable and children, where high holds the
+     * sets containing the variable (without it) and low the sets not containing it.
+     * The variable must come before all variables in low and high.
+     */
+    public int node(int v, int low, int high) {
+        // Zero-suppression: a variable that is in no set isn't stored
+        if (high == EMPTY) {
+            return low;
+        }
+
+        int bucket = hash(v, low, high) & (buckets.length - 1);
+        for (int n = buckets[bucket]; n >= 0; n = next[n]) {
+            if (var[n] == v && lo[n] == low && hi[n] == high) {
+                return n;
+            }
+        }
+
+        int n = allocate();
+        var[n] = v;
+        lo[n] = low;
+        hi[n] = high;
+        next[n] = buckets[bucket];
+        buckets[bucket] = n;
+        return n;
+    }
+
+    /**
+     * Returns the family holding only the set {v}
+     */
+    public int single(int v) {
+        return node(v, EMPTY, BASE);
+    }
+
+    public int var(int n) {
+        return var[n];
+    }
+
+    public int low(int n) {
+        return lo[n];
+    }
+
+    public int high(int n) {
+        return hi[n];
+    }
+
+    /**
+     * Adds an external reference to the given node, protecting it from garbage collection
+     */
+    public int ref(int n) {
+        refs[n]++;
+        return n;
+    }
+
+    /**
+     * Removes an external reference from the given node
+     */
+    public void deref(int n) {
+        refs[n]--;
+    }
+
+    /**
+     * Returns the sets that are in p or q
+     */
+    public int union(int p, int q) {
+        collectIfNeeded(p, q);
+        return unionRec(p, q);
+    }
+
+    private int unionRec(int p, int q) {
+        if (p == EMPTY || p == q) {
+            return q;
+        }
+        if (q == EMPTY) {
+            return p;
+        }
+        if (p > q) {
+            int tmp = p;
+            p = q;
+            q = tmp;
+        }
+
+        int cached = lookup(UNION, p, q);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        int result;
+        if (var[p] < var[q]) {
+            result = node(var[p], unionRec(lo[p], q), hi[p]);
+        } else if (var[p] > var[q]) {
+            result = node(var[q], unionRec(p, lo[q]), hi[q]);
+        } else {
+            result = node(var[p], unionRec(lo[p], lo[q]), unionRec(hi[p], hi[q]));
+        }
+        return store(UNION, p, q, result);
+    }
+
+    /**
+     * Returns the sets that are in both p and q
+     */
+    public int intersect(int p, int q) {
+        collectIfNeeded(p, q);
+        return intersectRec(p, q);
+    }
+
+    private int intersectRec(int p, int q) {
+        if (p == EMPTY || q == EMPTY) {
+            return EMPTY;
+        }
+        if (p == q) {
+            return p;
+        }
+        if (p > q) {
+            int tmp = p;
+            p = q;
+            q = tmp;
+        }
+
+        int cached = lookup(INTERSECT, p, q);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        int result;
+        if (var[p] < var[q]) {
+            result = intersectRec(lo[p], q);
+        } else if (var[p] > var[q]) {
+            result = intersectRec(p, lo[q]);
+        } else {
+            result = node(var[p], intersectRec(lo[p], lo[q]), intersectRec(hi[p], hi[q]));
+        }
+        return store(INTERSECT, p, q, result);
+    }
+
+    /**
+     * Returns the sets that are in p but not in q
+     */
+    public int difference(int p, int q) {
+        collectIfNeeded(p, q);
+        return differenceRec(p, q);
+    }
+
+    private int differenceRec(int p, int q) {
+        if (p == EMPTY || p == q) {
+            return EMPTY;
+        }
+        if (q == EMPTY) {
+            return p;
+        }
+
+        int cached = lookup(DIFFERENCE, p, q);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        int result;
+        if (var[p] < var[q]) {
+            result = node(var[p], differenceRec(lo[p], q), hi[p]);
+        } else if (var[p] > var[q]) {
+            result = differenceRec(p, lo[q]);
+        } else {
+            result = node(var[p], differenceRec(lo[p], lo[q]), differenceRec(hi[p], hi[q]));
+        }
+        return store(DIFFERENCE, p, q, result);
+    }
+
+    /**
+     * Returns the sets of p that don't contain v
+     */
+    public int offset(int p, int v) {
+        collectIfNeeded(p, EMPTY);
+        return offsetRec(p, v);
+    }
+
+    private int offsetRec(int p, int v) {
+        if (var[p] > v) {
+            return p;
+        }
+        if (var[p] == v) {
+            return lo[p];
+        }
+
+        int cached = lookup(OFFSET, p, v);
+        if (cached >= 0) {
+            return cached;
+        }
+        return store(OFFSET, p, v, node(var[p], offsetRec(lo[p], v), offsetRec(hi[p], v)));
+    }
+
+    /**
+     * Returns the sets of p that contain v
+     */
+    public int onset(int p, int v) {
+        collectIfNeeded(p, EMPTY);
+        return onsetRec(p, v);
+    }
+
+    private int onsetRec(int p, int v) {
+        if (var[p] > v) {
+            return EMPTY;
+        }
+        if (var[p] == v) {
+            return node(v, EMPTY, hi[p]);
+        }
+
+        int cached = lookup(ONSET, p, v);
+        if (cached >= 0) {
+            return cached;
+        }
+        return store(ONSET, p, v, node(var[p], onsetRec(lo[p], v), onsetRec(hi[p], v)));
+    }
+
+    /**
+     * Returns the sets of p with v added to those without it and removed from those with it
+     */
+    public int change(int p, int v) {
+        collectIfNeeded(p, EMPTY);
+        return changeRec(p, v);
+    }
+
+    private int changeRec(int p, int v) {
+        if (var[p] > v) {
+            return node(v, EMPTY, p);
+        }
+        if (var[p] == v) {
+            return node(v, hi[p], lo[p]);
+        }
+
+        int cached = lookup(CHANGE, p, v);
+        if (cached >= 0) {
+            return cached;
+        }
+        return store(CHANGE, p, v, node(var[p], changeRec(lo[p], v), changeRec(hi[p], v)));
+    }
+
+    /**
+     * Returns the sets of p that contain none of the variables v for which excluded[v] is true
+     */
+    public int exclude(int p, boolean[] excluded) {
+        collectIfNeeded(p, EMPTY);
+        stamp++;
+        return excludeRec(p, excluded);
+    }
+
+    private int excludeRec(int p, boolean[] excluded) {
+        if (p <= BASE) {
+            return p;
+        }
+        if (stamps[p] == stamp) {
+            return results[p];
+        }
+
+        int result;
+        if (var[p] < excluded.length && excluded[var[p]]) {
+            result = excludeRec(lo[p], excluded);
+        } else {
+            result = node(var[p], excludeRec(lo[p], excluded), excludeRec(hi[p], excluded));
+        }
+        stamps[p] = stamp;
+        results[p] = result;
+        return result;
+    }
+
+    /**
+     * Returns the number of sets in p
+     */
+    public double count(int p) {
+        stamp++;
+        return countRec(p);
+    }
+
+    private double countRec(int p) {
+        if (p <= BASE) {
+            return p;
+        }
+        if (stamps[p] == stamp) {
+            return counts[p];
+        }
+        double count = countRec(lo[p]) + countRec(hi[p]);
+        stamps[p] = stamp;
+        counts[p] = count;
+        return count;
+    }
+
+    /**
+     * Marks every variable that is in at least one set of p
+     */
+    public void support(int p, boolean[] variables) {
+        stamp++;
+        supportRec(p, variables);
+    }
+
+    private void supportRec(int p, boolean[] variables) {
+        if (p <= BASE || stamps[p] == stamp) {
+            return;
+        }
+        stamps[p] = stamp;
+
+        // Every node reached has at least one set through its high child
+        variables[var[p]] = true;
+        supportRec(lo[p], variables);
+        supportRec(hi[p], variables);
+    }
+
+    /**
+     * Returns the number of nodes in p, excluding the terminals
+     */
+    public int nodeCount(int p) {
+        stamp++;
+        return nodeCountRec(p);
+    }
+
+    private int nodeCountRec(int p) {
+        if (p <= BASE || stamps[p] == stamp) {
+            return 0;
+        }
+        stamps[p] = stamp;
+        return 1 + nodeCountRec(lo[p]) + nodeCountRec(hi[p]);
+    }
+
+    /**
+     * Returns the number of nodes currently allocated, including garbage not yet collected
+     */
+    public int getNodeNum() {
+        return used - freeCount;
+    }
+
+    /**
+     * Returns the highest number of nodes allocated at the same time
+     */
+    public int getPeakNodes() {
+        return peakNodes;
+    }
+
+    public int getTableSize() {
+        return capacity;
+    }
+
+    public int getGCCount() {
+        return gcCount;
+    }
+
+    public long getGCMillis() {
+        return gcMillis;
+    }
+
+    /**
+     * Collects garbage if (almost) every node is in use, keeping the referenced nodes
+     * and the given arguments of the operation about to start. Grows the table if
+     * less than a quarter of it could be freed.
+     */
+    private void collectIfNeeded(int p, int q) {
+        if (freeCount > capacity / 16 || used < capacity - capacity / 16) {
+            return;
+        }
+
+        refs[p]++;
+        refs[q]++;
+        collect();
+        refs[p]--;
+        refs[q]--;
+
+        if (freeCount + (capacity - used) < capacity / 4) {
+            grow();
+        }
+    }
+
+    /**
+     * Frees every node that can't be reached from a referenced node
+     */
+    public void collect() {
+        long start = System.currentTimeMillis();
+
+        // Mark the reachable nodes with the current stamp
+        stamp++;
+        for (int n = 2; n < used; n++) {
+            if (refs[n] > 0) {
+                mark(n);
+            }
+        }
+
+        // Rebuild the unique table from the marked nodes, and free the others
+        Arrays.fill(buckets, -1);
+        freeList = -1;
+        freeCount = 0;
+        for (int n = used - 1; n >= 2; n--) {
+            if (stamps[n] == stamp) {
+                int bucket = hash(var[n], lo[n], hi[n]) & (buckets.length - 1);
+                next[n] = buckets[bucket];
+                buckets[bucket] = n;
+            } else {
+                var[n] = -1;
+                next[n] = freeList;
+                freeList = n;
+                freeCount++;
+            }
+        }
+
+        // The cache may refer to freed nodes
+        Arrays.fill(cacheOp, 0);
+
+        gcCount++;
+        gcMillis += System.currentTimeMillis() - start;
+    }
+
+    private void mark(int n) {
+        while (n > BASE && stamps[n] != stamp) {
+            stamps[n] = stamp;
+            mark(hi[n]);
+            n = lo[n];
+        }
+    }
+
+    private int allocate() {
+        int n;
+        if (freeList >= 0) {
+            n = freeList;
+            freeList = next[n];
+            freeCount--;
+        } else {
+            if (used == capacity) {
+                grow();
+            }
+            n = used++;
+        }
+        peakNodes = Math.max(peakNodes, used - freeCount);
+        return n;
+    }
+
+    /**
+     * Doubles the number of nodes and rehashes the unique table
+     */
+    private void grow() {
+        capacity *= 2;
+        var = Arrays.copyOf(var, capacity);
+        lo = Arrays.copyOf(lo, capacity);
+        hi = Arrays.copyOf(hi, capacity);
+        next = Arrays.copyOf(next, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        results = Arrays.copyOf(results, capacity);
+
+        buckets = new int[buckets.length * 2];
+        Arrays.fill(buckets, -1);
+        for (int n = 2; n < used; n++) {
+            if (var[n] >= 0) {
+                int bucket = hash(var[n], lo[n], hi[n]) & (buckets.length - 1);
+                next[n] = buckets[bucket];
+                buckets[bucket] = n;
+            }
+        }
+    }
+
+    private int lookup(int op, int a, int b) {
+        int slot = hash(op, a, b) & (cacheOp.length - 1);
+        if (cacheOp[slot] == op && cacheA[slot] == a && cacheB[slot] == b) {
+            return cacheResult[slot];
+        }
+        return -1;
+    }
+
+    private int store(int op, int a, int b, int result) {
+        int slot = hash(op, a, b) & (cacheOp.length - 1);
+        cacheOp[slot] = op;
+        cacheA[slot] = a;
+        cacheB[slot] = b;
+        cacheResult[slot] = result;
+        return result;
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+        return h ^ (h >>> 15);
+    }
+}
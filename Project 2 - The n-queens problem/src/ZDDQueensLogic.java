@@ -0,0 +1,172 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Implementation of IQueensLogic using a ZDD of the solutions instead of a BDD.
+ *
+ * Every solution is a set of n of the n*n positions, so the family of solutions is
+ * very sparse, which a ZDD stores compactly: a position that isn't in a set takes no
+ * node at all. The family is built row by row from the bottom, adding a queen on
+ * every column of the row to the partial solutions of the rows below that it
+ * doesn't attack. Inserting a queen keeps the solutions containing it, and a position
+ * is valid exactly when it is in one of the solutions left.
+ */
+public class ZDDQueensLogic implements IQueensLogic {
+
+    private static final int INITIAL_NODES = 1 << 16;
+    private static final int CACHE_SIZE = 1 << 18;
+
+    private int size;		// Size of quadratic game board (i.e. size = #rows = #columns)
+    private int[][] board;	// Content of the board. Possible values: 0 (empty), 1 (queen), -1 (no queen allowed)
+
+    private ZDD zdd;
+    private int solutions; // The solutions consistent with the inserted queens (referenced)
+
+    // The solutions before every inserted queen (referenced), last inserted queen on top
+    private ArrayDeque<Integer> history = new ArrayDeque<>();
+
+    private long buildMillis;
+    private int rootNodes;
+
+    @Override
+    public void initializeBoard(int size) {
+        this.size = size;
+        this.history.clear();
+
+        long start = System.currentTimeMillis();
+        zdd = new ZDD(INITIAL_NODES, CACHE_SIZE);
+        solutions = buildSolutions();
+        buildMillis = System.currentTimeMillis() - start;
+        rootNodes = zdd.nodeCount(solutions);
+
+        System.out.println("ZDD for " + size + "x" + size + " built in " + buildMillis + " ms, "
+                + rootNodes + " nodes (peak " + zdd.getPeakNodes() + "), "
+                + (long) zdd.count(solutions) + " solutions");
+
+        updateBoard();
+    }
+
+    /**
+     * Returns the variable of the given position. The rows are ordered top to bottom,
+     * so the rows below a position have higher variables.
+     */
+    private int variable(int column, int row) {
+        return row * size + column;
+    }
+
+    /**
+     * Builds the family of all solutions, and returns it referenced
+     */
+    private int buildSolutions() {
+        // The partial solutions of the rows below the current one, starting with
+        // the empty solution below the last row
+        int partial = zdd.ref(ZDD.BASE);
+
+        boolean[] attacked = new boolean[size * size];
+        for (int row = size - 1; row >= 0; row--) {
+            int next = zdd.ref(ZDD.EMPTY);
+            for (int column = 0; column < size; column++) {
+                // The positions below attacked by a queen here
+                for (int below = row + 1; below < size; below++) {
+                    int distance = below - row;
+                    attacked[variable(column, below)] = true;
+                    if (column - distance >= 0) {
+                        attacked[variable(column - distance, below)] = true;
+                    }
+                    if (column + distance < size) {
+                        attacked[variable(column + distance, below)] = true;
+                    }
+                }
+
+                // The queen's variable comes before all variables below, so it can be
+                // added to every partial solution by a node on top of them
+                int compatible = zdd.ref(zdd.exclude(partial, attacked));
+                int withQueen = zdd.ref(zdd.node(variable(column, row), ZDD.EMPTY, compatible));
+                int union = zdd.ref(zdd.union(next, withQueen));
+                zdd.deref(compatible);
+                zdd.deref(withQueen);
+                zdd.deref(next);
+                next = union;
+
+                Arrays.fill(attacked, false);
+            }
+            zdd.deref(partial);
+            partial = next;
+        }
+        return partial;
+    }
+
+    @Override
+    public int[][] getBoard() {
+        return board;
+    }
+
+    @Override
+    public void insertQueen(int column, int row) {
+        // Only empty positions can get a queen
+        if (board[column][row] != 0) {
+            return;
+        }
+
+        history.push(solutions);
+        solutions = zdd.ref(zdd.onset(solutions, variable(column, row)));
+        updateBoard();
+    }
+
+    @Override
+    public boolean undo() {
+        if (history.isEmpty()) {
+            return false;
+        }
+
+        zdd.deref(solutions);
+        solutions = history.pop();
+        updateBoard();
+        return true;
+    }
+
+    /**
+     * Recomputes the board from the solutions left. Every position in a solution is
+     * valid, and the only valid position of a row or column must have a queen.
+     */
+    private void updateBoard() {
+        boolean[] valid = new boolean[size * size];
+        zdd.support(solutions, valid);
+
+        board = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                if (!valid[variable(column, row)]) {
+                    board[column][row] = -1;
+                }
+            }
+        }
+
+        QueensBoard.markForcedQueens(board);
+    }
+
+    /**
+     * Returns the number of solutions consistent with the inserted queens
+     */
+    public double countSolutions() {
+        return zdd.count(solutions);
+    }
+
+    /**
+     * Returns the ZDD package holding the solutions
+     */
+    public ZDD getZDD() {
+        return zdd;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * Returns the number of nodes in the family of all solutions
+     */
+    public int getRootNodes() {
+        return rootNodes;
+    }
+}